@@ -0,0 +1,136 @@
+package com.atikinbtw.velocitycoollist.benchmark;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.atikinbtw.velocitycoollist.Config;
+import com.atikinbtw.velocitycoollist.VelocityCoolList;
+import com.atikinbtw.velocitycoollist.Whitelist;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Плагин с настоящими Config, Whitelist и хранилищем вайтлиста во временной папке.
+ * MySQL заменяется встроенной MariaDB (MariaDB4j), PostgreSQL - встроенным
+ * сервером (zonky embedded-postgres), SQLite и файловое хранилище пишут во временную папку
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+    private static final int INSERT_CHUNK = 5000;
+
+    private final Path dataDirectory;
+    private final VelocityCoolList plugin;
+    private final DB mariaDb;
+    private final EmbeddedPostgres postgres;
+    private final Whitelist whitelist;
+
+    private BenchmarkEnvironment(Path dataDirectory, VelocityCoolList plugin, DB mariaDb, EmbeddedPostgres postgres, Whitelist whitelist) {
+        this.dataDirectory = dataDirectory;
+        this.plugin = plugin;
+        this.mariaDb = mariaDb;
+        this.postgres = postgres;
+        this.whitelist = whitelist;
+    }
+
+    /**
+     * @param backend sqlite, mysql, postgresql или file
+     * @param size    сколько ников записать в вайтлист
+     */
+    static BenchmarkEnvironment start(String backend, int size) throws Exception {
+        Path dataDirectory = Files.createTempDirectory("vclist-bench");
+
+        // Синхронизация и команды не используются, нужен только планировщик для сохранения конфига
+        VelocityCoolList plugin = new VelocityCoolList(Stubs.proxyServer(),
+                LoggerFactory.getLogger("VelocityCoolList"), dataDirectory);
+        new Config(plugin).init();
+        Config.getInstance().setAndSave("database.type", backend);
+
+        DB mariaDb = null;
+        if ("mysql".equals(backend)) {
+            DBConfigurationBuilder configuration = DBConfigurationBuilder.newBuilder();
+            configuration.setPort(0);
+            configuration.setDataDir(dataDirectory.resolve("mariadb").toString());
+            mariaDb = DB.newEmbeddedDB(configuration.build());
+            mariaDb.start();
+            mariaDb.createDB("velocitycoollist");
+
+            Config.getInstance().setAndSave("database.mysql.host", "localhost");
+            Config.getInstance().setAndSave("database.mysql.port", mariaDb.getConfiguration().getPort());
+            Config.getInstance().setAndSave("database.mysql.username", "root");
+            Config.getInstance().setAndSave("database.mysql.password", "");
+        }
+
+        EmbeddedPostgres postgres = null;
+        if ("postgresql".equals(backend)) {
+            postgres = EmbeddedPostgres.builder()
+                    .setDataDirectory(dataDirectory.resolve("postgres"))
+                    .setCleanDataDirectory(true)
+                    .start();
+
+            Config.getInstance().setAndSave("database.postgresql.host", "localhost");
+            Config.getInstance().setAndSave("database.postgresql.port", postgres.getPort());
+            Config.getInstance().setAndSave("database.postgresql.database", "postgres");
+            Config.getInstance().setAndSave("database.postgresql.username", "postgres");
+            Config.getInstance().setAndSave("database.postgresql.password", "");
+        }
+
+        Whitelist whitelist = new Whitelist(plugin);
+        whitelist.init();
+
+        List<String> chunk = new ArrayList<>(INSERT_CHUNK);
+        for (int i = 0; i < size; i++) {
+            chunk.add(playerName(i));
+            if (chunk.size() == INSERT_CHUNK || i == size - 1) {
+                if (!whitelist.addPlayers(chunk).complete()) {
+                    throw new IllegalStateException("Не удалось заполнить вайтлист для бенчмарка");
+                }
+                chunk.clear();
+            }
+        }
+
+        return new BenchmarkEnvironment(dataDirectory, plugin, mariaDb, postgres, whitelist);
+    }
+
+    static String playerName(int index) {
+        return "player" + index;
+    }
+
+    static String strangerName(int index) {
+        return "stranger" + index;
+    }
+
+    VelocityCoolList plugin() {
+        return plugin;
+    }
+
+    Whitelist whitelist() {
+        return whitelist;
+    }
+
+    @Override
+    public void close() throws Exception {
+        whitelist.shutdown();
+        if (mariaDb != null) {
+            mariaDb.stop();
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+
+        try (Stream<Path> files = Files.walk(dataDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // Временная папка, остатки удалит система
+                }
+            }
+        }
+    }
+}
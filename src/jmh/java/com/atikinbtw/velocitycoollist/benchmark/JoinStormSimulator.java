@@ -0,0 +1,225 @@
+package com.atikinbtw.velocitycoollist.benchmark;
+
+import com.atikinbtw.velocitycoollist.Config;
+import com.atikinbtw.velocitycoollist.LimboWhitelistHandler;
+import com.atikinbtw.velocitycoollist.VelocityCoolList;
+import com.atikinbtw.velocitycoollist.Whitelist;
+import com.atikinbtw.velocitycoollist.database.DatabaseManager;
+import com.atikinbtw.velocitycoollist.database.PoolMetrics;
+import com.atikinbtw.velocitycoollist.database.WhitelistRepository;
+import com.atikinbtw.velocitycoollist.metrics.LatencyHistogram;
+import com.velocitypowered.api.event.Continuation;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
+import com.velocitypowered.api.event.player.ServerPreConnectEvent;
+import com.velocitypowered.api.proxy.InboundConnection;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный прогон "массового входа": concurrency клиентов одновременно
+ * проводят синтетические PreLoginEvent и ServerPreConnectEvent через настоящие
+ * LimboWhitelistHandler и VelocityCoolList.onPlayerJoin и ждут resume().
+ * <p>
+ * Запуск: ./gradlew joinStorm --args="--players=100000 --joins=200000 --concurrency=500 --hit-ratio=0.9"
+ * <ul>
+ *     <li>--backend=sqlite|mysql|postgresql|file - хранилище (mysql - встроенная MariaDB, postgresql - встроенный PostgreSQL)</li>
+ *     <li>--players=N - сколько ников в вайтлисте</li>
+ *     <li>--joins=N - сколько входов провести, --warmup=N - сколько перед замером</li>
+ *     <li>--concurrency=N - сколько клиентов входят одновременно</li>
+ *     <li>--hit-ratio=0..1 - доля игроков из вайтлиста</li>
+ *     <li>--events=prelogin|connect|both - какие события проводить</li>
+ *     <li>--cache=false - проверять через БД, как до загрузки кэша</li>
+ * </ul>
+ */
+public final class JoinStormSimulator {
+    private final VelocityCoolList plugin;
+    private final LimboWhitelistHandler limboHandler;
+    private final Method onPlayerJoin;
+    private final InboundConnection connection = Stubs.create(InboundConnection.class);
+    private final RegisteredServer server = Stubs.create(RegisteredServer.class);
+    private final int players;
+    private final double hitRatio;
+    private final boolean preLogin;
+    private final boolean connect;
+
+    private final LatencyHistogram preLoginLatency = new LatencyHistogram();
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LongAdder wrongDecisions = new LongAdder();
+
+    private JoinStormSimulator(VelocityCoolList plugin, int players, double hitRatio, String events) throws ReflectiveOperationException {
+        this.plugin = plugin;
+        this.limboHandler = new LimboWhitelistHandler(plugin);
+        this.onPlayerJoin = VelocityCoolList.class.getDeclaredMethod("onPlayerJoin", ServerPreConnectEvent.class, Continuation.class);
+        this.onPlayerJoin.setAccessible(true);
+        this.players = players;
+        this.hitRatio = hitRatio;
+        this.preLogin = !events.equals("connect");
+        this.connect = !events.equals("prelogin");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String backend = options.getOrDefault("backend", "sqlite");
+        int players = Integer.parseInt(options.getOrDefault("players", "100000"));
+        int joins = Integer.parseInt(options.getOrDefault("joins", "100000"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", String.valueOf(Math.min(joins, 10000))));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        double hitRatio = Double.parseDouble(options.getOrDefault("hit-ratio", "0.5"));
+        String events = options.getOrDefault("events", "both");
+        boolean cache = Boolean.parseBoolean(options.getOrDefault("cache", "true"));
+
+        try (BenchmarkEnvironment environment = BenchmarkEnvironment.start(backend, players)) {
+            Config.getInstance().setAndSave("enabled", true);
+            Config.getInstance().setAndSave("limbo_integration", true);
+
+            if (!cache) {
+                Field loaded = Whitelist.class.getDeclaredField("loaded");
+                loaded.setAccessible(true);
+                loaded.setBoolean(environment.whitelist(), false);
+            }
+
+            JoinStormSimulator simulator = new JoinStormSimulator(environment.plugin(), players, hitRatio, events);
+            simulator.run(warmup, concurrency);
+            simulator.reset();
+
+            long started = System.nanoTime();
+            simulator.run(joins, concurrency);
+            long elapsed = System.nanoTime() - started;
+
+            System.out.printf("Массовый вход: %d входов, %d одновременно, %d ников в БД (%s), доля своих %.2f, кэш %s%n",
+                    joins, concurrency, players, backend, hitRatio, cache ? "включен" : "выключен");
+            if (simulator.preLogin) {
+                printLatency("PreLoginEvent", simulator.preLoginLatency);
+            }
+            if (simulator.connect) {
+                printLatency("ServerPreConnectEvent", simulator.connectLatency);
+            }
+            System.out.printf("Пропускная способность: %.0f входов/с%n", joins / (elapsed / 1e9));
+
+            if (WhitelistRepository.getInstance().getStore() instanceof DatabaseManager database) {
+                PoolMetrics poolMetrics = database.getPoolMetrics();
+                printLatency("Ожидание соединения Hikari", poolMetrics.getAcquireTime());
+                System.out.printf("Таймаутов пула: %d%n", poolMetrics.getTimeoutCount());
+            }
+            System.out.printf("Неверных решений: %d%n", simulator.wrongDecisions.sum());
+        }
+    }
+
+    private void run(int joins, int concurrency) throws InterruptedException {
+        AtomicLong next = new AtomicLong();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                while (next.getAndIncrement() < joins) {
+                    try {
+                        join();
+                    } catch (Exception e) {
+                        VelocityCoolList.LOGGER.error("Ошибка при симуляции входа: ", e);
+                        wrongDecisions.increment();
+                    }
+                }
+            });
+        }
+
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.DAYS);
+    }
+
+    private void join() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean whitelisted = random.nextDouble() < hitRatio;
+        int index = random.nextInt(players);
+        String username = whitelisted ? BenchmarkEnvironment.playerName(index) : BenchmarkEnvironment.strangerName(index);
+
+        if (preLogin) {
+            PreLoginEvent event = new PreLoginEvent(connection, username, null);
+            Completion completion = new Completion();
+
+            long started = System.nanoTime();
+            limboHandler.onPlayerPreLogin(event, completion);
+            completion.await();
+            preLoginLatency.record(System.nanoTime() - started);
+
+            if (event.getResult().isAllowed() != whitelisted) {
+                wrongDecisions.increment();
+            }
+        }
+
+        if (connect) {
+            Player player = Stubs.create(Player.class, Map.of("getUsername", args -> username));
+            ServerPreConnectEvent event = new ServerPreConnectEvent(player, server);
+            Completion completion = new Completion();
+
+            long started = System.nanoTime();
+            onPlayerJoin.invoke(plugin, event, completion);
+            completion.await();
+            connectLatency.record(System.nanoTime() - started);
+
+            if (event.getResult().isAllowed() != whitelisted) {
+                wrongDecisions.increment();
+            }
+        }
+    }
+
+    private void reset() {
+        preLoginLatency.reset();
+        connectLatency.reset();
+        wrongDecisions.reset();
+        if (WhitelistRepository.getInstance().getStore() instanceof DatabaseManager database) {
+            database.getPoolMetrics().getAcquireTime().reset();
+        }
+    }
+
+    private static void printLatency(String name, LatencyHistogram histogram) {
+        System.out.printf("%s: %d раз, p50 %.3f мс, p99 %.3f мс, p999 %.3f мс, max %.3f мс%n", name, histogram.getCount(),
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMax() / 1e6);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ожидался параметр вида --name=value: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Continuation, которого клиент ждет так же, как Velocity ждет продолжения события
+     */
+    private static final class Completion implements Continuation {
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void resume() {
+            latch.countDown();
+        }
+
+        @Override
+        public void resumeWithException(Throwable exception) {
+            VelocityCoolList.LOGGER.error("Обработчик завершился с ошибкой: ", exception);
+            latch.countDown();
+        }
+
+        private void await() throws InterruptedException {
+            latch.await();
+        }
+    }
+}
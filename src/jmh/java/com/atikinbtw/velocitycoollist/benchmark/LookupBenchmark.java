@@ -0,0 +1,99 @@
+package com.atikinbtw.velocitycoollist.benchmark;
+
+import com.atikinbtw.velocitycoollist.Whitelist;
+import com.atikinbtw.velocitycoollist.database.WhitelistRepository;
+import com.atikinbtw.velocitycoollist.database.WhitelistStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка ника при входе: через кэш Whitelist.contains и напрямую через БД,
+ * как при незагруженном кэше. Ники выбираются случайно из заранее
+ * подготовленного набора, чтобы не мерить создание строк
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LookupBenchmark {
+    private static final int NAME_POOL_SIZE = 1 << 16;
+
+    @Param({"sqlite", "mysql", "postgresql", "file"})
+    public String backend;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    // hit - все ники в списке, miss - ни одного, mixed - половина
+    @Param({"hit", "miss", "mixed"})
+    public String workload;
+
+    private BenchmarkEnvironment environment;
+    private Whitelist whitelist;
+    private WhitelistStore database;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.start(backend, size);
+        whitelist = environment.whitelist();
+        database = WhitelistRepository.getInstance().getStore();
+
+        SplittableRandom random = new SplittableRandom(42);
+        names = new String[NAME_POOL_SIZE];
+        for (int i = 0; i < names.length; i++) {
+            boolean hit = switch (workload) {
+                case "hit" -> true;
+                case "miss" -> false;
+                default -> (i & 1) == 0;
+            };
+            int index = random.nextInt(size);
+            names[i] = hit ? BenchmarkEnvironment.playerName(index) : BenchmarkEnvironment.strangerName(index);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    private String nextName() {
+        return names[ThreadLocalRandom.current().nextInt(names.length)];
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean cachedContains() {
+        return whitelist.contains(nextName());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean cachedContainsConcurrent() {
+        return whitelist.contains(nextName());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean databaseContains() {
+        return database.containsPlayer(nextName()).join();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean databaseContainsConcurrent() {
+        return database.containsPlayer(nextName()).join();
+    }
+}
@@ -0,0 +1,108 @@
+package com.atikinbtw.velocitycoollist.benchmark;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Заглушки интерфейсов Velocity (Player, ProxyServer и т.д.) через java.lang.reflect.Proxy.
+ * Неуказанные методы возвращают значения по умолчанию: false, 0 или null
+ */
+final class Stubs {
+    // Ответ, при котором метод возвращает саму заглушку (для builder-методов)
+    static final Object SELF = new Object();
+
+    private Stubs() {
+    }
+
+    /**
+     * ProxyServer, планировщик которого сразу выполняет задачу в текущем потоке
+     * (сохранение конфига и т.п.). Повторяющиеся задачи выполняются один раз
+     */
+    static ProxyServer proxyServer() {
+        Scheduler scheduler = create(Scheduler.class, Map.of("buildTask", args -> taskBuilder(args[1])));
+        return create(ProxyServer.class, Map.of("getScheduler", args -> scheduler));
+    }
+
+    private static Scheduler.TaskBuilder taskBuilder(Object task) {
+        return create(Scheduler.TaskBuilder.class, Map.of(
+                "delay", args -> SELF,
+                "repeat", args -> SELF,
+                "clearDelay", args -> SELF,
+                "clearRepeat", args -> SELF,
+                "schedule", args -> {
+                    if (task instanceof Runnable runnable) {
+                        runnable.run();
+                    }
+                    return create(ScheduledTask.class);
+                }));
+    }
+
+    static <T> T create(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        Object stub = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "toString" -> {
+                    if (method.getParameterCount() == 0) {
+                        return type.getSimpleName() + "Stub";
+                    }
+                }
+                case "hashCode" -> {
+                    if (method.getParameterCount() == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                }
+                case "equals" -> {
+                    if (method.getParameterCount() == 1) {
+                        return proxy == args[0];
+                    }
+                }
+                default -> {
+                }
+            }
+
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                Object result = answer.apply(args);
+                return result == SELF ? proxy : result;
+            }
+            return defaultValue(method.getReturnType());
+        });
+        return type.cast(stub);
+    }
+
+    static <T> T create(Class<T> type) {
+        return create(type, Map.of());
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == float.class) {
+            return 0F;
+        }
+        if (type == double.class) {
+            return 0D;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
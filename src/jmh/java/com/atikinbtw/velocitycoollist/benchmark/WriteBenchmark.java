@@ -0,0 +1,67 @@
+package com.atikinbtw.velocitycoollist.benchmark;
+
+import com.atikinbtw.velocitycoollist.Whitelist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Запись ников и выгрузка всего списка. addPlayer каждый раз добавляет
+ * новый ник, поэтому за время прогона список немного растет
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WriteBenchmark {
+    @Param({"sqlite", "mysql", "postgresql", "file"})
+    public String backend;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private final AtomicLong counter = new AtomicLong();
+    private BenchmarkEnvironment environment;
+    private Whitelist whitelist;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.start(backend, size);
+        whitelist = environment.whitelist();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addPlayer() {
+        whitelist.addPlayer("added" + counter.incrementAndGet());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void addPlayerConcurrent() {
+        whitelist.addPlayer("added" + counter.incrementAndGet());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(1)
+    public List<String> getAllPlayers() {
+        return whitelist.getWhitelist();
+    }
+}
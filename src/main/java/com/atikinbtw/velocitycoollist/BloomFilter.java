@@ -0,0 +1,102 @@
+package com.atikinbtw.velocitycoollist;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фильтр Блума для ников из вайтлиста. Ответ "нет" точный, поэтому ники
+ * не из списка отсекаются без обращения к кэшу, БД и каким-либо блокировкам.
+ * Удалять ники из фильтра нельзя - он пересоздается при очистке и перезагрузке
+ */
+public final class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private final LongAdder inserted = new LongAdder();
+
+    /**
+     * @param capacity          сколько ников рассчитан хранить фильтр
+     * @param falsePositiveRate желаемая вероятность ложноположительного ответа
+     */
+    public BloomFilter(long capacity, double falsePositiveRate) {
+        this.capacity = Math.max(1, capacity);
+        double rate = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+
+        long bits = (long) Math.ceil(-this.capacity * Math.log(rate) / (LN2 * LN2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashCount = (int) Math.max(1, Math.min(30, Math.round((double) bitCount / this.capacity * LN2)));
+    }
+
+    /**
+     * @param key ник, уже приведенный Usernames.normalize
+     */
+    public void put(String key) {
+        long hash1 = hash(key, 0);
+        long hash2 = hash(key, 0x9E3779B97F4A7C15L);
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+            words.getAndAccumulate((int) (bit >>> 6), 1L << bit, (current, mask) -> current | mask);
+        }
+        inserted.increment();
+    }
+
+    public boolean mightContain(String key) {
+        long hash1 = hash(key, 0);
+        long hash2 = hash(key, 0x9E3779B97F4A7C15L);
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getInsertedCount() {
+        return inserted.sum();
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Ожидаемая доля ложноположительных ответов при текущем заполнении
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * inserted.sum() / bitCount), hashCount);
+    }
+
+    private static long hash(String key, long seed) {
+        long hash = seed ^ (key.length() * 0xC6A4A7935BD1E995L);
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash = Long.rotateLeft(hash, 31);
+        }
+
+        // fmix64 из MurmurHash3
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -1,18 +1,32 @@
 package com.atikinbtw.velocitycoollist;
 
+import com.velocitypowered.api.scheduler.ScheduledTask;
 import org.simpleyaml.configuration.file.YamlFile;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class Config {
+    // Изменения за это время сохраняются в файл одной записью
+    private static final long SAVE_DELAY_MS = 500;
     private static Config INSTANCE;
     private final VelocityCoolList plugin;
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private volatile ScheduledTask pendingSave;
     private YamlFile config;
     private YamlFile messages;
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
+    // Разобранные сообщения: создаются при первом обращении и сбрасываются при каждой перезагрузке или сохранении
+    private volatile Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+    private volatile Map<String, MessageTemplate> prefixedTemplates = new ConcurrentHashMap<>();
 
     public Config(VelocityCoolList plugin) {
         this.plugin = plugin;
@@ -26,27 +40,96 @@ public final class Config {
         return INSTANCE;
     }
 
+    /**
+     * Настройки, которые читаются при каждом входе игрока, без обращений к YAML
+     */
+    public ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+
+    private void refreshSnapshot() {
+        templates = new ConcurrentHashMap<>();
+        prefixedTemplates = new ConcurrentHashMap<>();
+        snapshot = ConfigSnapshot.from(this);
+    }
+
+    /**
+     * Разобранное сообщение из messages.yml или null, если ключа нет
+     */
+    public MessageTemplate getTemplate(String key) {
+        return templates.computeIfAbsent(key, k -> {
+            String message = getMessage(k);
+            return message != null ? MessageTemplate.compile(message) : null;
+        });
+    }
+
+    /**
+     * Разобранное "префикс сообщение" для ответов на команды
+     */
+    public MessageTemplate getPrefixedTemplate(String key) {
+        return prefixedTemplates.computeIfAbsent(key, k -> {
+            String message = getMessage(k);
+            return MessageTemplate.compile(getString("prefix") + " " + (message != null ? message : ""));
+        });
+    }
+
     public void saveConfigFile() {
-        plugin.scheduleTask(() -> {
-            try {
+        refreshSnapshot();
+
+        // Несколько изменений подряд (например, частые enable/disable) записываются одной задачей
+        if (!savePending.compareAndSet(false, true)) {
+            return;
+        }
+
+        pendingSave = plugin.scheduleDelayedTask(() -> {
+            if (savePending.compareAndSet(true, false)) {
+                writeConfigFile();
+            }
+        }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Сразу записывает отложенное сохранение config.yml, если оно есть.
+     * Нужно перед перечитыванием файла и при выключении прокси, иначе
+     * последние изменения теряются или затираются старыми значениями
+     */
+    public void flush() {
+        if (!savePending.compareAndSet(true, false)) {
+            return;
+        }
+
+        ScheduledTask task = pendingSave;
+        if (task != null) {
+            task.cancel();
+        }
+        writeConfigFile();
+    }
+
+    private void writeConfigFile() {
+        try {
+            synchronized (this) {
                 config.save();
-            } catch (IOException e) {
-                VelocityCoolList.LOGGER.error("Error happened while saving the config.yml: ", e);
             }
-        });
+        } catch (IOException e) {
+            VelocityCoolList.LOGGER.error("Error happened while saving the config.yml: ", e);
+        }
     }
 
     public void reload() {
+        flush();
         try {
             messages.loadWithComments();
             config.loadWithComments();
         } catch (IOException e) {
             VelocityCoolList.LOGGER.error("Error happened while reloading: ", e);
         }
+        refreshSnapshot();
     }
 
     public void setAndSave(String key, Object value) {
-        config.set(key, value);
+        synchronized (this) {
+            config.set(key, value);
+        }
         saveConfigFile();
     }
 
@@ -55,6 +138,7 @@ public final class Config {
     }
 
     public void saveMessages() {
+        refreshSnapshot();
         plugin.scheduleTask(() -> {
             try {
                 messages.save();
@@ -77,6 +161,10 @@ public final class Config {
         return config.getInt(key);
     }
 
+    public double getDouble(String key) {
+        return config.getDouble(key);
+    }
+
     public String getMessage(String key) {
         return messages.getString(key);
     }
@@ -141,6 +229,23 @@ public final class Config {
             return;
         }
 
+        // Ключи, которых нет в старых файлах, берутся из встроенных config.yml и messages.yml
+        config.setDefaults(loadDefaults("/config.yml"));
+        messages.setDefaults(loadDefaults("/messages.yml"));
+
+        refreshSnapshot();
         new Migration(plugin, config).migrateIfNeeded();
     }
+
+    private YamlFile loadDefaults(String resourcePath) {
+        YamlFile defaults = new YamlFile();
+
+        try (InputStream resource = VelocityCoolList.class.getResourceAsStream(resourcePath)) {
+            defaults.loadFromString(new String(resource.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            VelocityCoolList.LOGGER.error("Error happened while loading default {}: ", resourcePath, e);
+        }
+
+        return defaults;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.atikinbtw.velocitycoollist;
+
+import net.kyori.adventure.text.Component;
+
+/**
+ * Неизменяемый снимок настроек, которые читаются при каждом входе игрока.
+ * Пересоздается при загрузке, перезагрузке и изменении конфига,
+ * поэтому обработчики событий не обходят дерево YAML
+ */
+public record ConfigSnapshot(
+        boolean enabled,
+        boolean limboIntegration,
+        Component kickMessage,
+        int lookupTimeoutMs,
+        boolean lookupFailOpen
+) {
+    // До загрузки конфига вайтлист считается выключенным, как и при чтении пустого YAML
+    static final ConfigSnapshot EMPTY = new ConfigSnapshot(false, false, Component.empty(), 2000, false);
+
+    static ConfigSnapshot from(Config config) {
+        // Сообщение о кике разбирается один раз, все отказы используют готовый Component
+        MessageTemplate kickMessage = config.getTemplate("kick_message");
+        return new ConfigSnapshot(
+                config.getBoolean("enabled"),
+                config.getBoolean("limbo_integration"),
+                kickMessage != null ? kickMessage.component() : Component.empty(),
+                config.getInt("lookup.timeout_ms"),
+                config.getBoolean("lookup.fail_open")
+        );
+    }
+}
@@ -0,0 +1,82 @@
+package com.atikinbtw.velocitycoollist;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сроки для временного доступа: разбор аргумента команды и вывод в сообщениях
+ */
+public final class Durations {
+    private static final long[] UNIT_MILLIS = {
+            TimeUnit.DAYS.toMillis(7), TimeUnit.DAYS.toMillis(1), TimeUnit.HOURS.toMillis(1), TimeUnit.MINUTES.toMillis(1), TimeUnit.SECONDS.toMillis(1)
+    };
+    private static final char[] UNIT_NAMES = {'w', 'd', 'h', 'm', 's'};
+
+    private Durations() {
+    }
+
+    /**
+     * Разбирает срок вида 30m, 12h, 7d, 2w или их сочетание (1d12h)
+     *
+     * @return срок в миллисекундах или -1, если строка не является сроком
+     */
+    public static long parseMillis(String text) {
+        if (text == null || text.isEmpty()) {
+            return -1;
+        }
+
+        long total = 0;
+        long number = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (c >= '0' && c <= '9') {
+                number = (number < 0 ? 0 : number) * 10 + (c - '0');
+                if (number > Integer.MAX_VALUE) {
+                    return -1;
+                }
+                continue;
+            }
+
+            int unit = unitIndex(c);
+            if (unit < 0 || number < 0) {
+                return -1;
+            }
+            total += number * UNIT_MILLIS[unit];
+            number = -1;
+        }
+
+        // Число без единицы в конце ("30" или "1d12")
+        if (number >= 0 || total <= 0) {
+            return -1;
+        }
+        return total;
+    }
+
+    /**
+     * Срок в виде 1d 12h: не больше двух самых крупных единиц
+     */
+    public static String format(long millis) {
+        StringBuilder builder = new StringBuilder();
+        int parts = 0;
+        for (int i = 0; i < UNIT_MILLIS.length && parts < 2; i++) {
+            long count = millis / UNIT_MILLIS[i];
+            if (count > 0) {
+                if (!builder.isEmpty()) {
+                    builder.append(' ');
+                }
+                builder.append(count).append(UNIT_NAMES[i]);
+                millis -= count * UNIT_MILLIS[i];
+                parts++;
+            }
+        }
+        return builder.isEmpty() ? "0s" : builder.toString();
+    }
+
+    private static int unitIndex(char c) {
+        for (int i = 0; i < UNIT_NAMES.length; i++) {
+            if (UNIT_NAMES[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
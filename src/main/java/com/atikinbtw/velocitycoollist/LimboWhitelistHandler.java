@@ -1,8 +1,11 @@
 package com.atikinbtw.velocitycoollist;
 
+import com.atikinbtw.velocitycoollist.jfr.JfrEvents;
+import com.atikinbtw.velocitycoollist.jfr.LoginCheckEvent;
+import com.atikinbtw.velocitycoollist.metrics.WhitelistMetrics;
+import com.velocitypowered.api.event.Continuation;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.PreLoginEvent;
-import net.kyori.adventure.text.minimessage.MiniMessage;
 
 /**
  * Обработчик событий LimboAPI с высоким приоритетом для проверки вайтлиста
@@ -17,22 +20,46 @@ public class LimboWhitelistHandler {
 
     /**
      * Обработчик события входа игрока с максимальным приоритетом
-     * Проверяет вайтлист до любых других событий LimboAPI
+     * Проверяет вайтлист до любых других событий LimboAPI.
+     * Пока идет проверка, приостанавливается только событие этого игрока
      */
     @Subscribe(priority = 10000) // Высокий приоритет
-    public void onPlayerPreLogin(PreLoginEvent event) {
-        if (!Config.getInstance().getBoolean("enabled") || !Config.getInstance().getBoolean("limbo_integration")) return;
+    public void onPlayerPreLogin(PreLoginEvent event, Continuation continuation) {
+        ConfigSnapshot config = Config.getInstance().snapshot();
+        if (!config.enabled() || !config.limboIntegration()) {
+            continuation.resume();
+            return;
+        }
         
         String username = event.getUsername();
+        long started = System.nanoTime();
+        LoginCheckEvent checkEvent = new LoginCheckEvent();
+        checkEvent.begin();
+        boolean cached = Whitelist.getInstance().isLoaded();
         
         // Проверяем наличие в вайтлисте
-        if (Whitelist.getInstance().contains(username)) {
-            return; // Игрок может проходить дальше
-        }
-        
-        // Игрок не в вайтлисте - блокируем вход
-        event.setResult(PreLoginEvent.PreLoginComponentResult.denied(
-            MiniMessage.miniMessage().deserialize(Config.getInstance().getMessage("kick_message"))
-        ));
+        Whitelist.getInstance().containsAsync(username).whenComplete((whitelisted, error) -> {
+            // resume в finally: иначе исключение оставит вход игрока висеть навсегда
+            try {
+                boolean denied = !Boolean.TRUE.equals(whitelisted);
+                if (denied) {
+                    // Игрок не в вайтлисте - блокируем вход
+                    event.setResult(PreLoginEvent.PreLoginComponentResult.denied(config.kickMessage()));
+                }
+                WhitelistMetrics.getInstance().recordPreLogin(System.nanoTime() - started, denied);
+                if (checkEvent.shouldCommit()) {
+                    checkEvent.handler = "PreLoginEvent";
+                    checkEvent.usernameHash = JfrEvents.usernameHash(username);
+                    checkEvent.backend = JfrEvents.backend();
+                    checkEvent.result = denied ? "denied" : "allowed";
+                    checkEvent.cached = cached;
+                    checkEvent.commit();
+                }
+            } catch (RuntimeException e) {
+                VelocityCoolList.LOGGER.error("Ошибка при проверке входа игрока {}: ", username, e);
+            } finally {
+                continuation.resume();
+            }
+        });
     }
 }
@@ -0,0 +1,236 @@
+package com.atikinbtw.velocitycoollist;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.ComponentLike;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Сообщение из messages.yml, заранее разобранное на текст и плейсхолдеры ($PLAYER и т.п.).
+ * Для текста (Discord) подстановка идет одним проходом в один StringBuilder. Для Component
+ * плейсхолдеры один раз заменяются тегами MiniMessage, а значения подставляются через
+ * Placeholder.unparsed: они не разбираются как разметка, поэтому ник с тегами ничего не ломает.
+ * Сообщения без плейсхолдеров разбираются MiniMessage один раз
+ */
+public final class MessageTemplate {
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.miniMessage();
+
+    // literals.length == placeholders.length + 1: текст, плейсхолдер, текст, ...
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+    // Разметка для MiniMessage: плейсхолдеры в тексте уже заменены тегами <player> и т.п.,
+    // а плейсхолдеры внутри тегов (например, в команде click) остаются разрывами, как в literals
+    private final String[] markup;
+    private final String[] tagPlaceholders;
+    // Разные плейсхолдеры, замененные тегами
+    private final String[] slots;
+    private volatile Component component;
+
+    private MessageTemplate(String[] literals, String[] placeholders, String[] markup, String[] tagPlaceholders, String[] slots) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.markup = markup;
+        this.tagPlaceholders = tagPlaceholders;
+        this.slots = slots;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static MessageTemplate compile(String message) {
+        String source = message != null ? message : "";
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        List<String> markup = new ArrayList<>();
+        List<String> tagPlaceholders = new ArrayList<>();
+        Set<String> slots = new LinkedHashSet<>();
+
+        StringBuilder markupLiteral = new StringBuilder(source.length());
+        boolean inTag = false;
+        char quote = 0;
+        int literalStart = 0;
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '$' && i + 1 < source.length() && isPlaceholderStart(source.charAt(i + 1))) {
+                int end = i + 2;
+                while (end < source.length() && isPlaceholderPart(source.charAt(end))) {
+                    end++;
+                }
+
+                String placeholder = source.substring(i + 1, end);
+                literals.add(source.substring(literalStart, i));
+                placeholders.add(placeholder);
+                if (inTag) {
+                    markup.add(markupLiteral.toString());
+                    markupLiteral.setLength(0);
+                    tagPlaceholders.add(placeholder);
+                } else {
+                    markupLiteral.append('<').append(tagName(placeholder)).append('>');
+                    slots.add(placeholder);
+                }
+                literalStart = end;
+                i = end;
+                continue;
+            }
+
+            if (c == '\\' && i + 1 < source.length() && source.charAt(i + 1) != '$') {
+                // Экранированный символ не открывает и не закрывает тег
+                markupLiteral.append(c).append(source.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+
+            if (inTag) {
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '>') {
+                    inTag = false;
+                }
+            } else if (c == '<') {
+                inTag = true;
+            }
+            markupLiteral.append(c);
+            i++;
+        }
+        literals.add(source.substring(literalStart));
+        markup.add(markupLiteral.toString());
+
+        return new MessageTemplate(literals.toArray(new String[0]), placeholders.toArray(new String[0]),
+                markup.toArray(new String[0]), tagPlaceholders.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    public boolean hasPlaceholders() {
+        return placeholders.length > 0;
+    }
+
+    /**
+     * @param replacements пары "имя, значение"; имя с $ или без ("$PLAYER" или "PLAYER").
+     *                     Плейсхолдеры без значения остаются в тексте как есть
+     */
+    public String render(String... replacements) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + placeholders.length * 16);
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]);
+
+            String value = find(placeholders[i], replacements);
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append('$').append(placeholders[i]);
+            }
+        }
+        return builder.append(literals[placeholders.length]).toString();
+    }
+
+    /**
+     * Сообщение как Component; без плейсхолдеров - один и тот же заранее разобранный.
+     * Значения вставляются как обычный текст, теги MiniMessage в них не работают
+     */
+    public Component component(String... replacements) {
+        return component(null, null, replacements);
+    }
+
+    /**
+     * То же, но значение плейсхолдера name - готовый Component со своим оформлением,
+     * например другое сообщение из messages.yml. Внутри тегов такой плейсхолдер не подставляется
+     */
+    public Component component(String name, ComponentLike value, String... replacements) {
+        if (placeholders.length == 0) {
+            Component cached = component;
+            if (cached == null) {
+                cached = MINI_MESSAGE.deserialize(literals[0]);
+                component = cached;
+            }
+            return cached;
+        }
+
+        TagResolver[] resolvers = new TagResolver[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            if (name != null && matches(slots[i], name)) {
+                resolvers[i] = Placeholder.component(tagName(slots[i]), value);
+                continue;
+            }
+            String text = find(slots[i], replacements);
+            resolvers[i] = Placeholder.unparsed(tagName(slots[i]), text != null ? text : "$" + slots[i]);
+        }
+        return MINI_MESSAGE.deserialize(renderMarkup(replacements), resolvers);
+    }
+
+    /**
+     * Разметка с подставленными плейсхолдерами внутри тегов. Значение экранируется
+     * для аргумента в кавычках, поэтому не может закрыть аргумент или тег
+     */
+    private String renderMarkup(String[] replacements) {
+        if (tagPlaceholders.length == 0) {
+            return markup[0];
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + tagPlaceholders.length * 16);
+        for (int i = 0; i < tagPlaceholders.length; i++) {
+            builder.append(markup[i]);
+
+            String value = find(tagPlaceholders[i], replacements);
+            if (value == null) {
+                builder.append('$').append(tagPlaceholders[i]);
+                continue;
+            }
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '\'' || c == '"') {
+                    builder.append('\\');
+                }
+                builder.append(c);
+            }
+        }
+        return builder.append(markup[tagPlaceholders.length]).toString();
+    }
+
+    private static String tagName(String placeholder) {
+        return placeholder.toLowerCase(Locale.ROOT);
+    }
+
+    private static String find(String placeholder, String[] replacements) {
+        for (int i = 0; i + 1 < replacements.length; i += 2) {
+            if (matches(placeholder, replacements[i])) {
+                return replacements[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name имя с $ или без ("$PLAYER" или "PLAYER")
+     */
+    private static boolean matches(String placeholder, String name) {
+        int offset = name.startsWith("$") ? 1 : 0;
+        return name.length() - offset == placeholder.length() && name.startsWith(placeholder, offset);
+    }
+
+    private static boolean isPlaceholderStart(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isPlaceholderPart(char c) {
+        return isPlaceholderStart(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+}
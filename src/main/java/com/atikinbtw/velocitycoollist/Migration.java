@@ -58,6 +58,7 @@ public class Migration {
             configFile.set("enable_clear_command", enableClearCommand);
 
             config.saveConfigFile();
+            config.flush();
 
             config.reload();
 
@@ -87,6 +88,7 @@ public class Migration {
             configFile.set("prefix", toml.getString("prefix"));
 
             config.saveConfigFile();
+            config.flush();
             config.saveMessages();
 
             oldConfigPath.toFile().delete();
@@ -113,6 +115,7 @@ public class Migration {
             configFile.set("config_version", 3);
             
             config.saveConfigFile();
+            config.flush();
             config.reload();
             
             VelocityCoolList.LOGGER.info("Миграция конфигурации завершена!");
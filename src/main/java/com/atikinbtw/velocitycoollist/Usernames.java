@@ -0,0 +1,23 @@
+package com.atikinbtw.velocitycoollist;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public final class Usernames {
+    // Ник Java-издания, допускается префикс Floodgate для Bedrock-игроков
+    private static final Pattern VALID_USERNAME = Pattern.compile("[.*]?[A-Za-z0-9_]{2,16}");
+
+    private Usernames() {
+    }
+
+    /**
+     * Приводит ник к ключу для регистронезависимого сравнения
+     */
+    public static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    public static boolean isValid(String username) {
+        return VALID_USERNAME.matcher(username).matches();
+    }
+}
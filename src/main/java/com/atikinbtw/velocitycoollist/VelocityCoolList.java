@@ -2,10 +2,15 @@ package com.atikinbtw.velocitycoollist;
 
 import com.atikinbtw.velocitycoollist.commands.MainCommand;
 import com.atikinbtw.velocitycoollist.discord.DiscordModule;
+import com.atikinbtw.velocitycoollist.jfr.JfrEvents;
+import com.atikinbtw.velocitycoollist.jfr.LoginCheckEvent;
+import com.atikinbtw.velocitycoollist.metrics.PrometheusFileWriter;
+import com.atikinbtw.velocitycoollist.metrics.WhitelistMetrics;
 import com.google.inject.Inject;
 import com.velocitypowered.api.command.BrigadierCommand;
 import com.velocitypowered.api.command.CommandManager;
 import com.velocitypowered.api.command.CommandMeta;
+import com.velocitypowered.api.event.Continuation;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.player.ServerPreConnectEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
@@ -14,7 +19,7 @@ import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
-import net.kyori.adventure.text.minimessage.MiniMessage;
+import com.velocitypowered.api.scheduler.ScheduledTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +34,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Date;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 @Plugin(
         id = "velocitycoollist",
@@ -44,6 +50,7 @@ public class VelocityCoolList {
     public final Path DATADIRECTORY;
     private final ProxyServer PROXY;
     private DiscordModule discordModule;
+    private PrometheusFileWriter prometheusWriter;
 
     @Inject
     public VelocityCoolList(ProxyServer proxy, Logger logger, @DataDirectory Path dataDirectory) {
@@ -58,6 +65,11 @@ public class VelocityCoolList {
         new Config(this).init();
         new Whitelist(this).init();
 
+        if (Config.getInstance().getBoolean("metrics.prometheus_file.enabled")) {
+            prometheusWriter = new PrometheusFileWriter(this);
+            prometheusWriter.start();
+        }
+
         // Регистрируем обработчик событий LimboAPI с высоким приоритетом
         // только если интеграция включена в конфигурации
         if (Config.getInstance().getBoolean("limbo_integration")) {
@@ -85,6 +97,7 @@ public class VelocityCoolList {
                 if (token != null && !token.equals("YOUR_DISCORD_BOT_TOKEN") && 
                     guildId != null && !guildId.equals("YOUR_GUILD_ID")) {
                     this.discordModule = new DiscordModule(this, token, guildId, allowedUsers);
+                    discordModule.start();
                 } else {
                     LOGGER.warn("Discord интеграция включена, но токен или ID сервера не настроены!");
                 }
@@ -101,16 +114,48 @@ public class VelocityCoolList {
     }
 
     @Subscribe(priority = 1000) // Низкий приоритет - работает как резервный обработчик
-    private void onPlayerJoin(ServerPreConnectEvent event) {
-        if (!Config.getInstance().getBoolean("enabled")) return;
+    private void onPlayerJoin(ServerPreConnectEvent event, Continuation continuation) {
+        ConfigSnapshot config = Config.getInstance().snapshot();
+        if (!config.enabled()) {
+            continuation.resume();
+            return;
+        }
         Player player = event.getPlayer();
 
-        Config.getInstance().getInt("config_version");
-        if (player.hasPermission("vclist.bypass") || Whitelist.getInstance().contains(player.getUsername()))
+        if (player.hasPermission("vclist.bypass")) {
+            continuation.resume();
             return;
+        }
 
-        player.disconnect(MiniMessage.miniMessage().deserialize(Config.getInstance().getMessage("kick_message")).asComponent());
-        event.setResult(ServerPreConnectEvent.ServerResult.denied());
+        long started = System.nanoTime();
+        LoginCheckEvent checkEvent = new LoginCheckEvent();
+        checkEvent.begin();
+        boolean cached = Whitelist.getInstance().isLoaded();
+
+        // Событие игрока ждет результата, потоки событий Velocity не блокируются
+        Whitelist.getInstance().containsAsync(player.getUsername()).whenComplete((whitelisted, error) -> {
+            // resume в finally: иначе исключение оставит вход игрока висеть навсегда
+            try {
+                boolean denied = !Boolean.TRUE.equals(whitelisted);
+                if (denied) {
+                    player.disconnect(config.kickMessage());
+                    event.setResult(ServerPreConnectEvent.ServerResult.denied());
+                }
+                WhitelistMetrics.getInstance().recordConnect(System.nanoTime() - started, denied);
+                if (checkEvent.shouldCommit()) {
+                    checkEvent.handler = "ServerPreConnectEvent";
+                    checkEvent.usernameHash = JfrEvents.usernameHash(player.getUsername());
+                    checkEvent.backend = JfrEvents.backend();
+                    checkEvent.result = denied ? "denied" : "allowed";
+                    checkEvent.cached = cached;
+                    checkEvent.commit();
+                }
+            } catch (RuntimeException e) {
+                VelocityCoolList.LOGGER.error("Ошибка при проверке входа игрока {}: ", player.getUsername(), e);
+            } finally {
+                continuation.resume();
+            }
+        });
     }
 
     private void checkForUpdates() {
@@ -153,11 +198,18 @@ public class VelocityCoolList {
             if (discordModule != null) {
                 discordModule.shutdown();
             }
+
+            if (prometheusWriter != null) {
+                prometheusWriter.stop();
+            }
             
             // Отключаем базу данных
             if (Whitelist.getInstance() != null) {
                 Whitelist.getInstance().shutdown();
             }
+
+            // Записываем изменения config.yml, которые еще ждут отложенного сохранения
+            Config.getInstance().flush();
             
             LOGGER.info("Плагин VelocityCoolList успешно отключен!");
             
@@ -169,4 +221,12 @@ public class VelocityCoolList {
     public void scheduleTask(Runnable runnable) {
         PROXY.getScheduler().buildTask(this, runnable).schedule();
     }
+
+    public ScheduledTask scheduleDelayedTask(Runnable runnable, long delay, TimeUnit unit) {
+        return PROXY.getScheduler().buildTask(this, runnable).delay(delay, unit).schedule();
+    }
+
+    public ScheduledTask scheduleRepeatingTask(Runnable runnable, long interval, TimeUnit unit) {
+        return PROXY.getScheduler().buildTask(this, runnable).delay(interval, unit).repeat(interval, unit).schedule();
+    }
 }
\ No newline at end of file
@@ -1,6 +1,12 @@
 package com.atikinbtw.velocitycoollist;
 
+import com.atikinbtw.velocitycoollist.database.BatchResult;
+import com.atikinbtw.velocitycoollist.database.UsernameConsumer;
+import com.atikinbtw.velocitycoollist.database.WhitelistChange;
 import com.atikinbtw.velocitycoollist.database.WhitelistRepository;
+import com.atikinbtw.velocitycoollist.jfr.JfrEvents;
+import com.atikinbtw.velocitycoollist.jfr.WhitelistLookupEvent;
+import com.atikinbtw.velocitycoollist.metrics.WhitelistMetrics;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
@@ -10,13 +16,42 @@ import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Whitelist {
+    private static final long MIN_BLOOM_FILTER_CAPACITY = 1024;
     private static Whitelist INSTANCE;
     private final VelocityCoolList plugin;
     private final Path whitelistPath;
     private WhitelistRepository repository;
+
+    // Кэш ников в нижнем регистре - проверки при входе не обращаются к БД
+    private volatile Set<String> players = ConcurrentHashMap.newKeySet();
+    // Срок действия временных ников из кэша (мс с эпохи): после него ник не пускается, даже если еще не удален
+    private volatile Map<String, Long> expiries = new ConcurrentHashMap<>();
+    // false, пока кэш ни разу не удалось загрузить - тогда проверки идут в БД
+    private volatile boolean loaded;
+    // Быстрый отсев ников не из списка, null если выключен
+    private volatile BloomFilter bloomFilter;
+    private final LongAdder bloomFilterRejections = new LongAdder();
+    // Синхронизация с другими прокси, null если выключена
+    private WhitelistSync sync;
+    private WhitelistExpiry expiry;
+    // Загрузки кэша идут по одной. Это не монитор this: его ждут потоки хранилища
+    private final Object loadLock = new Object();
+    // Защищено this. Пока loadPlayers читает список, изменения кэша копятся здесь
+    // и повторяются на новом списке после его публикации
+    private List<Runnable> changesDuringLoad;
     
     // Для обратной совместимости с существующим кодом - только для инициализации
     private List<String> whitelist = new ArrayList<>();
@@ -36,8 +71,202 @@ public class Whitelist {
     }
 
     public void reload() {
-        // Перезагрузка теперь не требуется, так как данные всегда актуальные из БД
-        VelocityCoolList.LOGGER.info("Whitelist перезагружен (данные всегда актуальные из БД)");
+        loadPlayers();
+        VelocityCoolList.LOGGER.info("Whitelist перезагружен из БД: {} игроков", players.size());
+    }
+
+    /**
+     * Список читается без монитора this: future хранилища завершаются в его
+     * потоках, а те обновляют кэш под этим монитором
+     */
+    private void loadPlayers() {
+        synchronized (loadLock) {
+            synchronized (this) {
+                changesDuringLoad = new ArrayList<>();
+            }
+            try {
+                loadPlayersLocked();
+            } finally {
+                synchronized (this) {
+                    changesDuringLoad = null;
+                }
+            }
+        }
+    }
+
+    private void loadPlayersLocked() {
+        List<String> allPlayers;
+        Map<String, Long> expiringPlayers;
+        long changeSeq = 0;
+        try {
+            // Номер изменения читается до списка, чтобы не пропустить изменения во время загрузки
+            if (sync != null) {
+                changeSeq = repository.getLatestChangeSeq();
+            }
+            allPlayers = repository.getAllPlayersAsync().get();
+            expiringPlayers = repository.getExpiringPlayersAsync().get();
+        } catch (Exception e) {
+            VelocityCoolList.LOGGER.error("Не удалось загрузить кэш whitelist, проверки будут выполняться через БД: ", e);
+            return;
+        }
+
+        Set<String> newPlayers = ConcurrentHashMap.newKeySet(allPlayers.size());
+        for (String player : allPlayers) {
+            newPlayers.add(Usernames.normalize(player));
+        }
+        Map<String, Long> newExpiries = new ConcurrentHashMap<>(expiringPlayers.size());
+        for (Map.Entry<String, Long> entry : expiringPlayers.entrySet()) {
+            newExpiries.put(Usernames.normalize(entry.getKey()), entry.getValue());
+        }
+        BloomFilter filter = buildBloomFilter(newPlayers);
+        synchronized (this) {
+            // Фильтр публикуется раньше списка: иначе при перезагрузке старый фильтр
+            // на мгновение отклонял бы ники, которые есть только в новом списке
+            bloomFilter = filter;
+            expiries = newExpiries;
+            players = newPlayers;
+            loaded = true;
+
+            // Изменения во время чтения могли не попасть в прочитанный список.
+            // Повторять их безопасно: добавление и удаление идемпотентны
+            for (Runnable change : changesDuringLoad) {
+                change.run();
+            }
+            changesDuringLoad.clear();
+
+            if (sync != null) {
+                sync.resetTo(changeSeq);
+            }
+        }
+
+        if (filter != null) {
+            VelocityCoolList.LOGGER.info("Фильтр Блума: {} бит, {} хеш-функций, ожидаемая доля ложных срабатываний {}",
+                    filter.getBitCount(), filter.getHashCount(), String.format("%.5f", filter.expectedFalsePositiveRate()));
+        }
+    }
+
+    /**
+     * Изменение кэша под монитором this. Монитор не держится во время ожидания
+     * хранилища, поэтому сюда можно приходить из его потоков
+     */
+    private synchronized void updateCache(Runnable change) {
+        change.run();
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(change);
+        }
+    }
+
+    /**
+     * Применяет изменения, сделанные другими прокси, по порядку номеров
+     */
+    void applyChanges(List<WhitelistChange> changes) {
+        for (WhitelistChange change : changes) {
+            switch (change.operation()) {
+                // Срок временного ника приходит вместе с ним, иначе здесь он считался бы бессрочным
+                case ADD -> updateCache(() -> cacheAdd(change.username(), change.expiresAt()));
+                case REMOVE -> updateCache(() -> cacheRemove(change.username()));
+                case CLEAR -> updateCache(this::cacheClear);
+            }
+        }
+    }
+
+    /**
+     * Убирает из кэша ники, удаленные проверкой сроков
+     */
+    void applyExpired(List<String> nicknames) {
+        updateCache(() -> {
+            for (String nickname : nicknames) {
+                cacheRemove(nickname);
+            }
+        });
+    }
+
+    private void cacheAdd(String nickname) {
+        cacheAdd(nickname, 0);
+    }
+
+    /**
+     * @param expiresAt срок действия ника (мс с эпохи), 0 - бессрочно
+     */
+    private void cacheAdd(String nickname, long expiresAt) {
+        String key = Usernames.normalize(nickname);
+        if (expiresAt != 0) {
+            // Срок раньше ника: иначе проверка между ними пропустила бы ник как постоянный
+            expiries.put(key, expiresAt);
+        } else {
+            // Ник с истекшим сроком добавлен заново - старый срок больше не действует
+            Long previous = expiries.get(key);
+            if (previous != null && previous <= System.currentTimeMillis()) {
+                expiries.remove(key, previous);
+            }
+        }
+
+        BloomFilter filter = bloomFilter;
+        if (filter != null) {
+            filter.put(key);
+        }
+        players.add(key);
+
+        // Фильтр заполнен сверх расчетного - пересоздаем с запасом
+        if (filter != null && filter.getInsertedCount() > filter.getCapacity()) {
+            rebuildBloomFilter();
+        }
+    }
+
+    private void cacheRemove(String nickname) {
+        String key = Usernames.normalize(nickname);
+        players.remove(key);
+        expiries.remove(key);
+    }
+
+    private void cacheClear() {
+        players.clear();
+        expiries.clear();
+        rebuildBloomFilter();
+    }
+
+    private void rebuildBloomFilter() {
+        bloomFilter = buildBloomFilter(players);
+    }
+
+    /**
+     * @return null, если фильтр выключен
+     */
+    private static BloomFilter buildBloomFilter(Set<String> keys) {
+        if (!Config.getInstance().getBoolean("bloom_filter.enabled")) {
+            return null;
+        }
+
+        BloomFilter filter = new BloomFilter(Math.max(MIN_BLOOM_FILTER_CAPACITY, keys.size() * 2L),
+                Config.getInstance().getDouble("bloom_filter.false_positive_rate"));
+        for (String key : keys) {
+            filter.put(key);
+        }
+        return filter;
+    }
+
+    private boolean isCached(String key) {
+        BloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(key)) {
+            bloomFilterRejections.increment();
+            return false;
+        }
+        if (!players.contains(key)) {
+            return false;
+        }
+        Long expiresAt = expiries.get(key);
+        return expiresAt == null || expiresAt > System.currentTimeMillis();
+    }
+
+    public BloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    /**
+     * Сколько проверок отклонено фильтром Блума без обращения к кэшу
+     */
+    public long getBloomFilterRejections() {
+        return bloomFilterRejections.sum();
     }
 
     private void loadWhitelist() {
@@ -58,23 +287,200 @@ public class Whitelist {
     }
 
     public boolean isWhitelistEmpty() {
-        return repository.isEmpty();
+        return players.isEmpty();
     }
 
     public void clear() {
-        repository.clear();
+        if (repository.clear()) {
+            updateCache(this::cacheClear);
+        }
     }
 
     public void removePlayer(String nickname) {
-        repository.removePlayer(nickname);
+        removePlayerAsync(nickname).exceptionally(error -> false).join();
     }
 
     public void addPlayer(String nickname) {
-        repository.addPlayer(nickname);
+        addPlayerAsync(nickname).exceptionally(error -> false).join();
+    }
+
+    /**
+     * С отложенной записью ник сразу попадает в кэш, а future завершается
+     * после коммита в БД. Иначе кэш обновляется после записи
+     *
+     * @return false, если ник уже был в списке
+     */
+    public CompletableFuture<Boolean> addPlayerAsync(String nickname) {
+        if (repository.isWriteBehindEnabled()) {
+            updateCache(() -> cacheAdd(nickname));
+            return repository.addPlayerAsync(nickname).whenComplete(this::reloadOnWriteError);
+        }
+
+        return repository.addPlayerAsync(nickname).thenApply(added -> {
+            if (added) {
+                updateCache(() -> {
+                    // Строка добавлена бессрочно, даже если в кэше еще был старый срок
+                    expiries.remove(Usernames.normalize(nickname));
+                    cacheAdd(nickname);
+                });
+            }
+            return added;
+        });
+    }
+
+    /**
+     * Добавляет ник до момента expiresAt (мс с эпохи), после него ник удалит WhitelistExpiry.
+     * Пишется сразу, без отложенной записи
+     *
+     * @return false, если ник уже был в списке
+     */
+    public CompletableFuture<Boolean> addTemporaryPlayerAsync(String nickname, long expiresAt) {
+        return repository.addTemporaryPlayerAsync(nickname, expiresAt).thenApply(added -> {
+            if (added) {
+                updateCache(() -> cacheAdd(nickname, expiresAt));
+            }
+            return added;
+        });
+    }
+
+    /**
+     * @return false, если ника не было в списке
+     */
+    public CompletableFuture<Boolean> removePlayerAsync(String nickname) {
+        if (repository.isWriteBehindEnabled()) {
+            updateCache(() -> cacheRemove(nickname));
+            return repository.removePlayerAsync(nickname).whenComplete(this::reloadOnWriteError);
+        }
+
+        return repository.removePlayerAsync(nickname).thenApply(removed -> {
+            if (removed) {
+                updateCache(() -> cacheRemove(nickname));
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * Отложенная запись не удалась - кэш уже изменен, поэтому перечитываем его из БД.
+     * Не в потоке записи: чтение списка ждет очередь этого потока
+     */
+    private void reloadOnWriteError(Boolean result, Throwable error) {
+        if (error != null) {
+            plugin.scheduleTask(this::loadPlayers);
+        }
+    }
+
+    public BatchResult addPlayers(Collection<String> nicknames) {
+        BatchResult result = repository.addPlayers(nicknames);
+        if (result.complete()) {
+            // Копия: вызывающий может переиспользовать коллекцию, а изменение может повториться после загрузки
+            List<String> batch = new ArrayList<>(nicknames);
+            updateCache(() -> {
+                for (String nickname : batch) {
+                    cacheAdd(nickname);
+                }
+            });
+        } else {
+            // Часть пакетов могла записаться - перечитываем кэш целиком
+            loadPlayers();
+        }
+        return result;
+    }
+
+    public BatchResult removePlayers(Collection<String> nicknames) {
+        BatchResult result = repository.removePlayers(nicknames);
+        if (result.complete()) {
+            // Копия: вызывающий может переиспользовать коллекцию, а изменение может повториться после загрузки
+            List<String> batch = new ArrayList<>(nicknames);
+            updateCache(() -> {
+                for (String nickname : batch) {
+                    cacheRemove(nickname);
+                }
+            });
+        } else {
+            loadPlayers();
+        }
+        return result;
     }
 
     public boolean contains(String nickname) {
-        return repository.contains(nickname);
+        WhitelistLookupEvent event = new WhitelistLookupEvent();
+        event.begin();
+
+        boolean cached = loaded;
+        boolean whitelisted = cached ? isCached(Usernames.normalize(nickname)) : repository.contains(nickname);
+        WhitelistMetrics.getInstance().recordLookup(whitelisted, cached);
+        commitLookupEvent(event, nickname, String.valueOf(whitelisted), cached);
+        return whitelisted;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private static void commitLookupEvent(WhitelistLookupEvent event, String nickname, String result, boolean cached) {
+        if (event.shouldCommit()) {
+            event.usernameHash = JfrEvents.usernameHash(nickname);
+            event.backend = JfrEvents.backend();
+            event.result = result;
+            event.cached = cached;
+            event.commit();
+        }
+    }
+
+    /**
+     * Проверка для обработчиков событий: не блокирует поток.
+     * Если кэш не загружен, запрос уходит в БД с ограничением по времени
+     * и политикой lookup.fail_open на случай таймаута или ошибки
+     */
+    public CompletableFuture<Boolean> containsAsync(String nickname) {
+        WhitelistMetrics metrics = WhitelistMetrics.getInstance();
+        WhitelistLookupEvent event = new WhitelistLookupEvent();
+        event.begin();
+
+        if (loaded) {
+            boolean whitelisted = isCached(Usernames.normalize(nickname));
+            metrics.recordLookup(whitelisted, true);
+            commitLookupEvent(event, nickname, String.valueOf(whitelisted), true);
+            return CompletableFuture.completedFuture(whitelisted);
+        }
+
+        ConfigSnapshot config = Config.getInstance().snapshot();
+        boolean failOpen = config.lookupFailOpen();
+        return repository.containsAsync(nickname)
+                .orTimeout(config.lookupTimeoutMs(), TimeUnit.MILLISECONDS)
+                .handle((whitelisted, error) -> {
+                    if (error == null) {
+                        metrics.recordLookup(whitelisted, false);
+                        commitLookupEvent(event, nickname, String.valueOf(whitelisted), false);
+                        return whitelisted;
+                    }
+
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        metrics.recordLookupTimeout();
+                        commitLookupEvent(event, nickname, "timeout", false);
+                    } else {
+                        metrics.recordLookupError();
+                        commitLookupEvent(event, nickname, "error", false);
+                        VelocityCoolList.LOGGER.error("Ошибка при проверке игрока {} в whitelist: ", nickname, cause);
+                    }
+                    return failOpen;
+                });
+    }
+    
+    /**
+     * Размер списка по кэшу, без запроса COUNT(*) к БД
+     */
+    public int size() {
+        return loaded ? players.size() : repository.countPlayers();
+    }
+
+    /**
+     * Страница списка по алфавиту: после ника after (keyset) или по номеру страницы
+     */
+    public List<String> getPage(String after, int page, int pageSize) {
+        return repository.getPlayersPage(after, (page - 1) * pageSize, pageSize);
     }
     
     public List<String> getActualWhitelist() {
@@ -86,6 +492,26 @@ public class Whitelist {
         return repository.getAllPlayers();
     }
 
+    /**
+     * Передает все ники из БД по одному, не загружая список в память
+     *
+     * @return число переданных ников
+     */
+    public long forEachPlayer(UsernameConsumer consumer) throws IOException {
+        try {
+            return repository.forEachPlayer(consumer).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Не удалось прочитать список игроков", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Чтение списка игроков прервано", e);
+        }
+    }
+
     public void saveFile() {
         // Метод оставлен для обратной совместимости, но теперь ничего не делает
         // так как сохранение происходит автоматически в базе данных
@@ -105,6 +531,10 @@ public class Whitelist {
 
         // Инициализируем репозиторий базы данных
         repository.initialize();
+
+        if (repository.isChangeLogEnabled()) {
+            sync = new WhitelistSync(plugin, this, repository);
+        }
         
         // Проверяем, нужна ли миграция с JSON
         if (Files.exists(whitelistPath)) {
@@ -112,9 +542,16 @@ public class Whitelist {
             migrateFromJson();
         }
         
-        // Выводим информацию о количестве игроков
-        int playerCount = repository.getAllPlayers().size();
-        VelocityCoolList.LOGGER.info("Whitelist загружен: {} игроков", playerCount);
+        // Загружаем кэш ников, дальше БД используется только для записи
+        loadPlayers();
+        VelocityCoolList.LOGGER.info("Whitelist загружен: {} игроков", players.size());
+
+        if (sync != null) {
+            sync.start();
+        }
+
+        expiry = new WhitelistExpiry(plugin, this, repository);
+        expiry.start();
     }
     
     private void migrateFromJson() {
@@ -124,15 +561,14 @@ public class Whitelist {
             if (!whitelist.isEmpty()) {
                 VelocityCoolList.LOGGER.info("Миграция {} игроков из JSON в базу данных...", whitelist.size());
                 
-                // Добавляем всех игроков в базу данных
-                int migrated = 0;
-                for (String player : whitelist) {
-                    if (repository.addPlayer(player)) {
-                        migrated++;
-                    }
-                }
+                // Добавляем всех игроков в базу данных пакетами
+                BatchResult result = repository.addPlayers(whitelist);
                 
-                VelocityCoolList.LOGGER.info("Перенесено {} из {} игроков", migrated, whitelist.size());
+                VelocityCoolList.LOGGER.info("Перенесено {} из {} игроков", result.affected(), whitelist.size());
+                if (!result.complete()) {
+                    VelocityCoolList.LOGGER.error("Миграция прервана ошибкой, whitelist.json оставлен без изменений");
+                    return;
+                }
                 
                 try {
                     // Создаем бэкап старого файла
@@ -149,6 +585,14 @@ public class Whitelist {
     }
     
     public void shutdown() {
+        if (sync != null) {
+            sync.stop();
+        }
+
+        if (expiry != null) {
+            expiry.stop();
+        }
+
         if (repository != null) {
             repository.shutdown();
         }
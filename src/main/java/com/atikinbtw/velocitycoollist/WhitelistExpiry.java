@@ -0,0 +1,67 @@
+package com.atikinbtw.velocitycoollist;
+
+import com.atikinbtw.velocitycoollist.database.WhitelistRepository;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Удаление временных ников с истекшим сроком. Вместо задачи на каждый ник
+ * одна периодическая задача выбирает истекшие ники по индексу expires_at
+ * пачками, начиная с самых старых. До удаления такие ники уже не пускаются:
+ * проверки в кэше и в БД пропускают истекшие записи
+ */
+public class WhitelistExpiry {
+    private static final int SWEEP_LIMIT = 500;
+
+    private final VelocityCoolList plugin;
+    private final Whitelist whitelist;
+    private final WhitelistRepository repository;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private ScheduledTask task;
+
+    public WhitelistExpiry(VelocityCoolList plugin, Whitelist whitelist, WhitelistRepository repository) {
+        this.plugin = plugin;
+        this.whitelist = whitelist;
+        this.repository = repository;
+    }
+
+    public void start() {
+        long interval = Math.max(1, Config.getInstance().getInt("expiry.sweep_interval_seconds"));
+        task = plugin.scheduleRepeatingTask(this::sweep, interval, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    private void sweep() {
+        // Проходы не должны накладываться, если удаление идет дольше интервала
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            int total = 0;
+            List<String> removed;
+            do {
+                removed = repository.removeExpired(now, SWEEP_LIMIT);
+                whitelist.applyExpired(removed);
+                total += removed.size();
+            } while (removed.size() == SWEEP_LIMIT);
+
+            if (total > 0) {
+                VelocityCoolList.LOGGER.info("Из whitelist удалено {} игроков с истекшим сроком", total);
+            }
+        } catch (Exception e) {
+            VelocityCoolList.LOGGER.error("Ошибка при удалении игроков с истекшим сроком: ", e);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
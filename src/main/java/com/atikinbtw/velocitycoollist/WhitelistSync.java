@@ -0,0 +1,143 @@
+package com.atikinbtw.velocitycoollist;
+
+import com.atikinbtw.velocitycoollist.database.WhitelistChange;
+import com.atikinbtw.velocitycoollist.database.WhitelistRepository;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Синхронизация кэша вайтлиста между несколькими прокси с общей базой.
+ * Периодически читает из whitelist_changes только новые изменения
+ * и применяет их к кэшу, не перечитывая всю таблицу
+ */
+public class WhitelistSync {
+    private static final int POLL_LIMIT = 1000;
+    // Сколько ждать, пока пропуск в номерах заполнится еще не завершенной транзакцией
+    private static final long GAP_TIMEOUT_MS = 10_000;
+    private static final long TRIM_INTERVAL_MS = 60_000;
+
+    private final VelocityCoolList plugin;
+    private final Whitelist whitelist;
+    private final WhitelistRepository repository;
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private volatile long lastSeq;
+    private long gapSince;
+    private long lastTrim;
+    private ScheduledTask task;
+
+    public WhitelistSync(VelocityCoolList plugin, Whitelist whitelist, WhitelistRepository repository) {
+        this.plugin = plugin;
+        this.whitelist = whitelist;
+        this.repository = repository;
+    }
+
+    public void start() {
+        long interval = Math.max(100, Config.getInstance().getInt("sync.poll_interval_ms"));
+        task = plugin.scheduleRepeatingTask(this::poll, interval, TimeUnit.MILLISECONDS);
+        VelocityCoolList.LOGGER.info("Синхронизация whitelist между прокси включена (опрос каждые {} мс)", interval);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Вызывается после полной загрузки кэша: дальше читаем изменения после seq
+     */
+    void resetTo(long seq) {
+        synchronized (whitelist) {
+            lastSeq = seq;
+            gapSince = 0;
+        }
+    }
+
+    private void poll() {
+        // Опросы не должны накладываться, если БД отвечает медленно
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            pollChanges();
+            trimIfNeeded();
+        } catch (Exception e) {
+            VelocityCoolList.LOGGER.error("Ошибка при синхронизации whitelist: ", e);
+        } finally {
+            polling.set(false);
+        }
+    }
+
+    private void pollChanges() throws Exception {
+        long from = lastSeq;
+        List<WhitelistChange> changes = repository.getChangesSince(from, POLL_LIMIT);
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        // Нужные записи уже удалены из журнала - перечитываем список целиком
+        if (from > 0 && changes.get(0).seq() > from + 1 && repository.getOldestChangeSeq() > from + 1) {
+            VelocityCoolList.LOGGER.warn("Журнал изменений whitelist обрезан дальше прочитанного, список перечитывается целиком");
+            whitelist.reload();
+            return;
+        }
+
+        synchronized (whitelist) {
+            // Кэш перезагрузили, пока читали журнал - эти изменения уже устарели
+            if (lastSeq != from) {
+                return;
+            }
+
+            whitelist.applyChanges(changes);
+
+            // Номера без пропусков считаются прочитанными окончательно. После пропуска
+            // изменения перечитываются, пока пропуск не заполнится или не истечет
+            // GAP_TIMEOUT_MS: повторное применение по порядку дает тот же результат
+            long contiguous = from;
+            for (WhitelistChange change : changes) {
+                if (change.seq() != contiguous + 1) {
+                    break;
+                }
+                contiguous = change.seq();
+            }
+
+            long newest = changes.get(changes.size() - 1).seq();
+            if (contiguous == newest) {
+                lastSeq = newest;
+                gapSince = 0;
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (gapSince == 0) {
+                gapSince = now;
+            }
+
+            if (now - gapSince >= GAP_TIMEOUT_MS) {
+                // Транзакция с пропущенным номером откатилась
+                lastSeq = newest;
+                gapSince = 0;
+            } else {
+                lastSeq = contiguous;
+            }
+        }
+    }
+
+    private void trimIfNeeded() throws Exception {
+        long now = System.currentTimeMillis();
+        if (now - lastTrim < TRIM_INTERVAL_MS) {
+            return;
+        }
+        lastTrim = now;
+
+        long retention = TimeUnit.MINUTES.toMillis(Math.max(1, Config.getInstance().getInt("sync.retention_minutes")));
+        int removed = repository.trimChanges(now - retention);
+        if (removed > 0) {
+            VelocityCoolList.LOGGER.debug("Из журнала изменений whitelist удалено {} старых записей", removed);
+        }
+    }
+}
@@ -1,18 +1,40 @@
 package com.atikinbtw.velocitycoollist.commands;
 
 import com.atikinbtw.velocitycoollist.Config;
+import com.atikinbtw.velocitycoollist.Durations;
+import com.atikinbtw.velocitycoollist.MessageTemplate;
 import com.atikinbtw.velocitycoollist.VelocityCoolList;
 import com.atikinbtw.velocitycoollist.Whitelist;
+import com.atikinbtw.velocitycoollist.database.DatabaseExecutor;
+import com.atikinbtw.velocitycoollist.database.DatabaseManager;
+import com.atikinbtw.velocitycoollist.database.WhitelistRepository;
+import com.atikinbtw.velocitycoollist.io.NameFileFormat;
+import com.atikinbtw.velocitycoollist.io.WhitelistExporter;
+import com.atikinbtw.velocitycoollist.io.WhitelistImporter;
+import com.atikinbtw.velocitycoollist.metrics.DatabaseOperation;
+import com.atikinbtw.velocitycoollist.metrics.LatencyHistogram;
+import com.atikinbtw.velocitycoollist.metrics.WhitelistMetrics;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.context.CommandContext;
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.proxy.Player;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class CommandHelper {
     private static final MiniMessage MINI_MESSAGE = MiniMessage.miniMessage();
+    // Одновременно выполняется только один импорт или экспорт
+    private static final AtomicBoolean TRANSFER_RUNNING = new AtomicBoolean();
 
     public static int about(CommandContext<CommandSource> context) {
         context.getSource().sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + "VelocityCoolList v" + VelocityCoolList.VERSION));
@@ -23,28 +45,79 @@ public final class CommandHelper {
     public static int status(CommandContext<CommandSource> context) {
         CommandSource source = context.getSource();
 
-        String status = Config.getInstance().getBoolean("enabled") ? Config.getInstance().getMessage("whitelist_enabled") : Config.getInstance().getMessage("whitelist_disabled");
+        // Статус - отдельное сообщение со своей разметкой, поэтому передается готовым Component
+        MessageTemplate status = Config.getInstance().getTemplate(Config.getInstance().getBoolean("enabled") ? "whitelist_enabled" : "whitelist_disabled");
 
-        source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " +
-                replacePlaceholders(Config.getInstance().getMessage("status"), 
-                        "$STATUS", status,
-                        "$SOURCE", getSourceName(source)
-                )
-        ));
+        sendMessage(source, "status", "$STATUS", status != null ? status.component() : Component.empty());
 
         return Command.SINGLE_SUCCESS;
     }
 
+    public static int stats(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        WhitelistMetrics metrics = WhitelistMetrics.getInstance();
+        // null для файлового хранилища: у него нет пула соединений и очередей запросов
+        DatabaseManager database = WhitelistRepository.getInstance().getStore() instanceof DatabaseManager manager ? manager : null;
+
+        sendMessage(source, "stats",
+                "$LOOKUPS", String.valueOf(metrics.getLookups()),
+                "$CACHED", String.valueOf(metrics.getCachedLookups()),
+                "$HITS", String.valueOf(metrics.getHits()),
+                "$MISSES", String.valueOf(metrics.getMisses()),
+                "$TIMEOUTS", String.valueOf(metrics.getLookupTimeouts()),
+                "$ERRORS", String.valueOf(metrics.getLookupErrors()),
+                "$DENIALS", String.valueOf(metrics.getDenials()),
+                "$BLOOM_REJECTIONS", String.valueOf(Whitelist.getInstance().getBloomFilterRejections()),
+                "$COALESCED", database != null ? String.valueOf(database.getCoalescedLookupCount()) : "0",
+                "$BATCHED", database != null ? String.valueOf(database.getBatchedLookupCount()) : "0");
+
+        sendLatency(source, "PreLoginEvent", metrics.getPreLoginLatency());
+        sendLatency(source, "ServerPreConnectEvent", metrics.getConnectLatency());
+        for (DatabaseOperation operation : DatabaseOperation.values()) {
+            sendLatency(source, "DB " + operation.getMetricName(), metrics.getDatabaseLatency(operation));
+        }
+        if (database != null) {
+            sendLatency(source, "DB connection wait", database.getPoolMetrics().getAcquireTime());
+        }
+
+        HikariPoolMXBean pool = database != null ? database.getPoolMXBean() : null;
+        sendMessage(source, "stats_database",
+                "$ERRORS", String.valueOf(metrics.getDatabaseErrors()),
+                "$REJECTED", database != null ? String.valueOf(database.getExecutor().getRejectedCount(DatabaseExecutor.Lane.LOOKUP)
+                        + database.getExecutor().getRejectedCount(DatabaseExecutor.Lane.GENERAL)) : "0",
+                "$ACTIVE", pool != null ? String.valueOf(pool.getActiveConnections()) : "-",
+                "$IDLE", pool != null ? String.valueOf(pool.getIdleConnections()) : "-",
+                "$PENDING", pool != null ? String.valueOf(pool.getThreadsAwaitingConnection()) : "-");
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static void sendLatency(CommandSource source, String name, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+
+        sendMessage(source, "stats_latency",
+                "$NAME", name,
+                "$COUNT", String.valueOf(histogram.getCount()),
+                "$P50", formatMillis(histogram.getValueAtPercentile(50)),
+                "$P999", formatMillis(histogram.getValueAtPercentile(99.9)),
+                "$P99", formatMillis(histogram.getValueAtPercentile(99)),
+                "$MAX", formatMillis(histogram.getMax()));
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
     public static int enable(CommandContext<CommandSource> context) {
         CommandSource source = context.getSource();
 
         if (Config.getInstance().getBoolean("enabled")) {
-            source.sendMessage(MINI_MESSAGE.deserialize(replacePlaceholders(Config.getInstance().getString("prefix") + " " + Config.getInstance().getMessage("already_enabled"), 
-                    "$SOURCE", getSourceName(source))));
+            sendMessage(source, "already_enabled");
         } else {
             Config.getInstance().setAndSave("enabled", true);
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("enable"), 
-                    "$SOURCE", getSourceName(source))));
+            sendMessage(source, "enable");
         }
 
         return Command.SINGLE_SUCCESS;
@@ -54,12 +127,10 @@ public final class CommandHelper {
         CommandSource source = context.getSource();
 
         if (!(boolean) Config.getInstance().getBoolean("enabled")) {
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("already_disabled"), 
-                    "$SOURCE", getSourceName(source))));
+            sendMessage(source, "already_disabled");
         } else {
             Config.getInstance().setAndSave("enabled", false);
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("disable"), 
-                    "$SOURCE", getSourceName(source))));
+            sendMessage(source, "disable");
         }
 
         return Command.SINGLE_SUCCESS;
@@ -72,31 +143,44 @@ public final class CommandHelper {
         try {
             username = context.getArgument("username", String.class);
         } catch (Exception e) {
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("add_incorrect_usage"), 
-                    "$SOURCE", getSourceName(source))));
+            sendMessage(source, "add_incorrect_usage");
             return Command.SINGLE_SUCCESS;
         }
 
+        long duration = 0;
+        try {
+            String durationText = context.getArgument("duration", String.class);
+            duration = Durations.parseMillis(durationText);
+            if (duration <= 0) {
+                sendMessage(source, "invalid_duration", "$DURATION", durationText);
+                return Command.SINGLE_SUCCESS;
+            }
+        } catch (IllegalArgumentException e) {
+            // Срок не указан - ник добавляется навсегда
+        }
+
         if (Whitelist.getInstance().contains(username)) {
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " +
-                            replacePlaceholders(Config.getInstance().getMessage("already_on_whitelist"), 
-                                    "$SOURCE", getSourceName(source),
-                                    "$PLAYER", username)
-                    )
-            );
+            sendMessage(source, "already_on_whitelist", "$PLAYER", username);
 
             return Command.SINGLE_SUCCESS;
         }
 
+        if (duration > 0) {
+            boolean added = Whitelist.getInstance()
+                    .addTemporaryPlayerAsync(username, System.currentTimeMillis() + duration)
+                    .exceptionally(error -> false).join();
+            if (added) {
+                sendMessage(source, "add_temporary", "$PLAYER", username, "$DURATION", Durations.format(duration));
+            } else {
+                sendMessage(source, "already_on_whitelist", "$PLAYER", username);
+            }
+            return Command.SINGLE_SUCCESS;
+        }
+
         // add and save the file
         Whitelist.getInstance().addPlayer(username);
         Whitelist.getInstance().saveFile();
-        source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " +
-                        replacePlaceholders(Config.getInstance().getMessage("add"), 
-                                "$SOURCE", getSourceName(source),
-                                "$PLAYER", username)
-                )
-        );
+        sendMessage(source, "add", "$PLAYER", username);
 
         return Command.SINGLE_SUCCESS;
     }
@@ -108,54 +192,67 @@ public final class CommandHelper {
         try {
             username = context.getArgument("username", String.class);
         } catch (Exception e) {
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("remove_incorrect_usage"), 
-                    "$SOURCE", getSourceName(source))));
+            sendMessage(source, "remove_incorrect_usage");
             return Command.SINGLE_SUCCESS;
         }
 
         if (!Whitelist.getInstance().contains(username)) {
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " +
-                            replacePlaceholders(Config.getInstance().getMessage("not_on_whitelist"), 
-                                    "$SOURCE", getSourceName(source),
-                                    "$PLAYER", username)
-                    )
-            );
+            sendMessage(source, "not_on_whitelist", "$PLAYER", username);
             return Command.SINGLE_SUCCESS;
         }
 
         // remove and save the file
         Whitelist.getInstance().removePlayer(username);
         Whitelist.getInstance().saveFile();
-        source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " +
-                        replacePlaceholders(Config.getInstance().getMessage("remove"), 
-                                "$SOURCE", getSourceName(source),
-                                "$PLAYER", username)
-                )
-        );
+        sendMessage(source, "remove", "$PLAYER", username);
 
         return Command.SINGLE_SUCCESS;
     }
 
     public static int list(CommandContext<CommandSource> context) {
-        CommandSource source = context.getSource();
+        int page;
+        try {
+            page = context.getArgument("page", Integer.class);
+        } catch (IllegalArgumentException e) {
+            page = 1;
+        }
+
+        return sendListPage(context.getSource(), null, page);
+    }
+
+    public static int listAfter(CommandContext<CommandSource> context) {
+        return sendListPage(context.getSource(), context.getArgument("username", String.class), 1);
+    }
+
+    private static int sendListPage(CommandSource source, String after, int page) {
+        int total = Whitelist.getInstance().size();
+        
+        if (total == 0) {
+            sendMessage(source, "list_no_players");
+            return Command.SINGLE_SUCCESS;
+        }
+
+        int pageSize = Math.max(1, Config.getInstance().getInt("list_page_size"));
+        int pages = (total + pageSize - 1) / pageSize;
 
-        // Получаем актуальные данные из БД
-        List<String> actualWhitelist = Whitelist.getInstance().getActualWhitelist();
+        // Получаем из БД только одну страницу
+        List<String> players = Whitelist.getInstance().getPage(after, page, pageSize);
         
-        if (actualWhitelist.isEmpty()) {
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("list_no_players"), 
-                    "$SOURCE", getSourceName(source))));
+        if (players.isEmpty()) {
+            sendMessage(source, "list_page_empty", "$PAGES", String.valueOf(pages));
             return Command.SINGLE_SUCCESS;
         }
 
-        source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " +
-                        replacePlaceholders(Config.getInstance().getMessage("list"),
-                                "$SOURCE", getSourceName(source),
-                                "$WHITELIST_SIZE", String.valueOf(actualWhitelist.size()),
-                                "$WHITELIST", String.join(", ", actualWhitelist)
-                        )
-                )
-        );
+        sendMessage(source, after == null ? "list" : "list_after",
+                "$WHITELIST_SIZE", String.valueOf(total),
+                "$WHITELIST", String.join(", ", players),
+                "$PAGE", String.valueOf(page),
+                "$PAGES", String.valueOf(pages),
+                "$PLAYER", after == null ? "" : after);
+
+        if (players.size() == pageSize) {
+            sendMessage(source, "list_next_page", "$LAST", players.get(players.size() - 1));
+        }
 
         return Command.SINGLE_SUCCESS;
     }
@@ -164,16 +261,117 @@ public final class CommandHelper {
         CommandSource source = context.getSource();
 
         if (!Config.getInstance().getBoolean("enable_clear_command")) {
-            source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("clear_disabled"), 
-                    "$SOURCE", getSourceName(source))));
+            sendMessage(source, "clear_disabled");
             return Command.SINGLE_SUCCESS;
         }
 
         Whitelist.getInstance().clear();
         Whitelist.getInstance().saveFile();
 
-        source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("clear"), 
-                "$SOURCE", getSourceName(source))));
+        sendMessage(source, "clear");
+        return Command.SINGLE_SUCCESS;
+    }
+
+    public static int importFile(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        String fileName;
+
+        try {
+            fileName = context.getArgument("file", String.class);
+        } catch (Exception e) {
+            sendMessage(source, "import_incorrect_usage");
+            return Command.SINGLE_SUCCESS;
+        }
+
+        Path file = resolveDataFile(fileName);
+        if (file == null || !Files.isRegularFile(file)) {
+            sendMessage(source, "import_file_not_found", "$FILE", fileName);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        if (!TRANSFER_RUNNING.compareAndSet(false, true)) {
+            sendMessage(source, "transfer_already_running");
+            return Command.SINGLE_SUCCESS;
+        }
+
+        sendMessage(source, "import_started", "$FILE", fileName);
+
+        // Файл читается потоково и вне потока команды
+        Config.getInstance().getPlugin().scheduleTask(() -> {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                WhitelistImporter.Result result = WhitelistImporter.importFrom(reader, NameFileFormat.fromFileName(fileName),
+                        processed -> sendMessage(source, "import_progress",
+                                "$FILE", fileName,
+                                "$PROCESSED", String.valueOf(processed)));
+
+                sendMessage(source, result.complete() ? "import_done" : "import_failed",
+                        "$FILE", fileName,
+                        "$ADDED", String.valueOf(result.added()),
+                        "$SKIPPED", String.valueOf(result.skipped()),
+                        "$INVALID", String.valueOf(result.invalid()));
+            } catch (Exception e) {
+                VelocityCoolList.LOGGER.error("Ошибка при импорте игроков из {}: ", fileName, e);
+                sendMessage(source, "import_failed", "$FILE", fileName);
+            } finally {
+                TRANSFER_RUNNING.set(false);
+            }
+        });
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    public static int exportFile(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        String fileName;
+
+        try {
+            fileName = context.getArgument("file", String.class);
+        } catch (Exception e) {
+            sendMessage(source, "export_incorrect_usage");
+            return Command.SINGLE_SUCCESS;
+        }
+
+        NameFileFormat format;
+        try {
+            String formatName = context.getArgument("format", String.class);
+            format = NameFileFormat.fromString(formatName);
+            if (format == null) {
+                sendMessage(source, "export_unknown_format", "$FORMAT", formatName);
+                return Command.SINGLE_SUCCESS;
+            }
+        } catch (IllegalArgumentException e) {
+            // Формат не указан - определяем по расширению
+            format = NameFileFormat.fromFileName(fileName);
+        }
+
+        Path file = resolveDataFile(fileName);
+        if (file == null || Files.isDirectory(file)) {
+            sendMessage(source, "export_incorrect_usage");
+            return Command.SINGLE_SUCCESS;
+        }
+
+        if (!TRANSFER_RUNNING.compareAndSet(false, true)) {
+            sendMessage(source, "transfer_already_running");
+            return Command.SINGLE_SUCCESS;
+        }
+
+        sendMessage(source, "export_started", "$FILE", fileName);
+
+        NameFileFormat exportFormat = format;
+        Config.getInstance().getPlugin().scheduleTask(() -> {
+            try {
+                long count = WhitelistExporter.exportTo(file, exportFormat);
+                sendMessage(source, "export_done",
+                        "$FILE", fileName,
+                        "$COUNT", String.valueOf(count));
+            } catch (Exception e) {
+                VelocityCoolList.LOGGER.error("Ошибка при экспорте игроков в {}: ", fileName, e);
+                sendMessage(source, "export_failed", "$FILE", fileName);
+            } finally {
+                TRANSFER_RUNNING.set(false);
+            }
+        });
+
         return Command.SINGLE_SUCCESS;
     }
 
@@ -185,18 +383,37 @@ public final class CommandHelper {
         
         // DiscordMessageManager теперь автоматически использует перезагруженный Config
 
-        source.sendMessage(MINI_MESSAGE.deserialize(Config.getInstance().getString("prefix") + " " + replacePlaceholders(Config.getInstance().getMessage("reload"), 
-                "$SOURCE", getSourceName(source))));
+        sendMessage(source, "reload");
         return Command.SINGLE_SUCCESS;
     }
 
-    private static String replacePlaceholders(String message, String... replacements) {
-        for (int i = 0; i < replacements.length; i += 2) {
-            if (i + 1 < replacements.length) {
-                message = message.replace(replacements[i], replacements[i + 1]);
-            }
+    /**
+     * Файл внутри папки плагина, null при попытке выйти за ее пределы
+     */
+    private static Path resolveDataFile(String fileName) {
+        Path dataDirectory = Config.getInstance().getPlugin().DATADIRECTORY.toAbsolutePath().normalize();
+        Path file = dataDirectory.resolve(fileName).normalize();
+        return file.startsWith(dataDirectory) ? file : null;
+    }
+
+    private static void sendMessage(CommandSource source, String key, String... replacements) {
+        sendMessage(source, key, null, null, replacements);
+    }
+
+    /**
+     * @param name  плейсхолдер, значение которого - Component с разметкой, или null
+     */
+    private static void sendMessage(CommandSource source, String key, String name, Component value, String... replacements) {
+        MessageTemplate template = Config.getInstance().getPrefixedTemplate(key);
+        if (!template.hasPlaceholders()) {
+            source.sendMessage(template.component());
+            return;
         }
-        return message;
+
+        String[] withSource = Arrays.copyOf(replacements, replacements.length + 2);
+        withSource[replacements.length] = "$SOURCE";
+        withSource[replacements.length + 1] = getSourceName(source);
+        source.sendMessage(template.component(name, value, withSource));
     }
 
     private static String getSourceName(CommandSource source) {
@@ -1,5 +1,7 @@
 package com.atikinbtw.velocitycoollist.commands;
 
+import com.atikinbtw.velocitycoollist.io.NameFileFormat;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.builder.RequiredArgumentBuilder;
@@ -13,6 +15,7 @@ import com.velocitypowered.api.command.VelocityBrigadierMessage;
 import com.velocitypowered.api.proxy.ProxyServer;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
 
 public final class MainCommand {
@@ -25,15 +28,27 @@ public final class MainCommand {
                 BrigadierCommand.literalArgumentBuilder("vclist").executes(CommandHelper::about)
                         .then(LiteralArgumentBuilder.<CommandSource>literal("status").executes(CommandHelper::status).requires(source -> source.hasPermission("vclist.admin")))
 
+                        .then(LiteralArgumentBuilder.<CommandSource>literal("stats").executes(CommandHelper::stats).requires(source -> source.hasPermission("vclist.admin")))
+
                         .then(LiteralArgumentBuilder.<CommandSource>literal("enable").requires(source -> source.hasPermission("vclist.admin")).executes(CommandHelper::enable))
                         .then(LiteralArgumentBuilder.<CommandSource>literal("disable").requires(source -> source.hasPermission("vclist.admin")).executes(CommandHelper::disable))
 
                         .then(LiteralArgumentBuilder.<CommandSource>literal("add").requires(source -> source.hasPermission("vclist.manage")).executes(CommandHelper::addUser)
-                                .then(RequiredArgumentBuilder.<CommandSource, String>argument("username", StringArgumentType.word()).executes(CommandHelper::addUser).suggests(MainCommand::suggestAll)))
+                                .then(RequiredArgumentBuilder.<CommandSource, String>argument("username", StringArgumentType.word()).executes(CommandHelper::addUser).suggests(MainCommand::suggestAll)
+                                        .then(RequiredArgumentBuilder.<CommandSource, String>argument("duration", StringArgumentType.word()).executes(CommandHelper::addUser))))
                         .then(LiteralArgumentBuilder.<CommandSource>literal("remove").requires(source -> source.hasPermission("vclist.manage")).executes(CommandHelper::removeUser)
                                 .then(RequiredArgumentBuilder.<CommandSource, String>argument("username", StringArgumentType.word()).executes(CommandHelper::removeUser).suggests(MainCommand::suggestAll)))
 
-                        .then(LiteralArgumentBuilder.<CommandSource>literal("list").requires(source -> source.hasPermission("vclist.manage")).executes(CommandHelper::list))
+                        .then(LiteralArgumentBuilder.<CommandSource>literal("import").requires(source -> source.hasPermission("vclist.manage")).executes(CommandHelper::importFile)
+                                .then(RequiredArgumentBuilder.<CommandSource, String>argument("file", StringArgumentType.string()).executes(CommandHelper::importFile)))
+                        .then(LiteralArgumentBuilder.<CommandSource>literal("export").requires(source -> source.hasPermission("vclist.manage")).executes(CommandHelper::exportFile)
+                                .then(RequiredArgumentBuilder.<CommandSource, String>argument("file", StringArgumentType.string()).executes(CommandHelper::exportFile)
+                                        .then(RequiredArgumentBuilder.<CommandSource, String>argument("format", StringArgumentType.word()).executes(CommandHelper::exportFile).suggests(MainCommand::suggestFormats))))
+
+                        .then(LiteralArgumentBuilder.<CommandSource>literal("list").requires(source -> source.hasPermission("vclist.manage")).executes(CommandHelper::list)
+                                .then(RequiredArgumentBuilder.<CommandSource, Integer>argument("page", IntegerArgumentType.integer(1)).executes(CommandHelper::list))
+                                .then(LiteralArgumentBuilder.<CommandSource>literal("after")
+                                        .then(RequiredArgumentBuilder.<CommandSource, String>argument("username", StringArgumentType.word()).executes(CommandHelper::listAfter))))
                         .then(LiteralArgumentBuilder.<CommandSource>literal("reload").requires(source -> source.hasPermission("vclist.admin")).executes(CommandHelper::reload))
 
                         .then(LiteralArgumentBuilder.<CommandSource>literal("clear").requires(source -> source.hasPermission("vclist.manage")).executes(CommandHelper::clear))
@@ -56,4 +71,15 @@ public final class MainCommand {
 
         return builder.buildFuture();
     }
-}
\ No newline at end of file
+
+    private static CompletableFuture<Suggestions> suggestFormats(CommandContext<CommandSource> commandSourceCommandContext, SuggestionsBuilder builder) {
+        for (NameFileFormat format : NameFileFormat.values()) {
+            String name = format.getExtension();
+            if (name.startsWith(builder.getRemaining().toLowerCase(Locale.ROOT))) {
+                builder.suggest(name);
+            }
+        }
+
+        return builder.buildFuture();
+    }
+}
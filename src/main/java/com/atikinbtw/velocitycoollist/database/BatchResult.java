@@ -0,0 +1,38 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import java.util.List;
+
+/**
+ * Результат массовой операции: счетчики по каждому пакету (транзакции).
+ * complete = false, если операция прервалась ошибкой - пакеты из chunks
+ * при этом уже записаны в БД
+ */
+public record BatchResult(List<Chunk> chunks, boolean complete) {
+
+    /**
+     * @param affected сколько ников добавлено или удалено
+     * @param skipped  сколько ников пропущено (уже были в списке или отсутствовали)
+     */
+    public record Chunk(int affected, int skipped) {
+    }
+
+    public static BatchResult failed() {
+        return new BatchResult(List.of(), false);
+    }
+
+    public int affected() {
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.affected();
+        }
+        return total;
+    }
+
+    public int skipped() {
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.skipped();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,170 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import com.atikinbtw.velocitycoollist.VelocityCoolList;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Отдельные потоки для работы с БД вместо общего ForkJoinPool.commonPool().
+ * Проверки при входе игроков идут по своей полосе, чтобы массовые
+ * операции администраторов не могли их задержать
+ */
+public class DatabaseExecutor {
+    public enum Lane {
+        // Проверки ников при входе игроков
+        LOOKUP,
+        // Запись, выгрузка списка и прочие операции администраторов
+        GENERAL
+    }
+
+    private final ExecutorService lookupService;
+    private final ExecutorService generalService;
+    private final Executor lookupExecutor;
+    private final Executor generalExecutor;
+    private final LongAdder rejectedLookups = new LongAdder();
+    private final LongAdder rejectedGeneral = new LongAdder();
+    private final boolean virtualThreads;
+
+    /**
+     * @param poolSize       размер пула соединений, потоки делятся между полосами
+     * @param queueSize      сколько задач может ждать в очереди каждой полосы
+     * @param virtualThreads использовать виртуальные потоки (Java 21+)
+     */
+    public DatabaseExecutor(int poolSize, int queueSize, boolean virtualThreads) {
+        int lookupThreads = Math.max(1, (poolSize + 1) / 2);
+        int generalThreads = Math.max(1, poolSize - lookupThreads);
+
+        ExecutorService virtualLookup = virtualThreads ? newVirtualThreadExecutor() : null;
+        ExecutorService virtualGeneral = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtualLookup != null && virtualGeneral != null;
+
+        if (this.virtualThreads) {
+            this.lookupService = virtualLookup;
+            this.generalService = virtualGeneral;
+            this.lookupExecutor = new BoundedExecutor(virtualLookup, lookupThreads + queueSize, rejectedLookups);
+            this.generalExecutor = new BoundedExecutor(virtualGeneral, generalThreads + queueSize, rejectedGeneral);
+        } else {
+            this.lookupService = newPlatformExecutor("lookup", lookupThreads, queueSize, rejectedLookups);
+            this.generalService = newPlatformExecutor("general", generalThreads, queueSize, rejectedGeneral);
+            this.lookupExecutor = lookupService;
+            this.generalExecutor = generalService;
+        }
+
+        VelocityCoolList.LOGGER.info("Потоки БД: {} для проверок, {} для остальных операций, очередь {}{}",
+                lookupThreads, generalThreads, queueSize, this.virtualThreads ? " (виртуальные потоки)" : "");
+    }
+
+    /**
+     * Запускает задачу на нужной полосе. При переполнении очереди
+     * возвращает future, завершенный с RejectedExecutionException
+     */
+    public <T> CompletableFuture<T> supply(Lane lane, Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, lane == Lane.LOOKUP ? lookupExecutor : generalExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public long getRejectedCount(Lane lane) {
+        return lane == Lane.LOOKUP ? rejectedLookups.sum() : rejectedGeneral.sum();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void shutdown() {
+        lookupService.shutdown();
+        generalService.shutdown();
+
+        try {
+            if (!generalService.awaitTermination(10, TimeUnit.SECONDS)) {
+                VelocityCoolList.LOGGER.warn("Не все операции с БД завершились до отключения");
+                generalService.shutdownNow();
+            }
+            if (!lookupService.awaitTermination(1, TimeUnit.SECONDS)) {
+                lookupService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(String name, int threads, int queueSize, LongAdder rejected) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "VelocityCoolList-DB-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory,
+                (runnable, executor) -> {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Очередь БД (" + name + ") переполнена");
+                });
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        // Плагин собирается под Java 17, поэтому метод ищется через reflection
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            VelocityCoolList.LOGGER.warn("Виртуальные потоки недоступны (нужна Java 21+), используются обычные потоки");
+            return null;
+        }
+    }
+
+    /**
+     * Ограничивает число задач в работе и в ожидании для виртуальных потоков,
+     * у которых нет собственной очереди
+     */
+    private static final class BoundedExecutor implements Executor {
+        private final Executor delegate;
+        private final Semaphore permits;
+        private final LongAdder rejected;
+
+        private BoundedExecutor(Executor delegate, int limit, LongAdder rejected) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(limit);
+            this.rejected = rejected;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!permits.tryAcquire()) {
+                rejected.increment();
+                throw new RejectedExecutionException("Очередь БД переполнена");
+            }
+
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+}
@@ -1,21 +1,60 @@
 package com.atikinbtw.velocitycoollist.database;
 
 import com.atikinbtw.velocitycoollist.Config;
+import com.atikinbtw.velocitycoollist.Usernames;
 import com.atikinbtw.velocitycoollist.VelocityCoolList;
+import com.atikinbtw.velocitycoollist.jfr.DatabaseOperationEvent;
+import com.atikinbtw.velocitycoollist.jfr.JfrEvents;
+import com.atikinbtw.velocitycoollist.metrics.DatabaseOperation;
+import com.atikinbtw.velocitycoollist.metrics.WhitelistMetrics;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
-public class DatabaseManager {
+/**
+ * Хранилище вайтлиста в SQL-базе (SQLite, MySQL или PostgreSQL) через пул HikariCP.
+ * Различия в SQL между базами вынесены в SqlDialect
+ */
+public class DatabaseManager implements WhitelistStore {
+    // Сколько ников записывается одной транзакцией в массовых операциях
+    private static final int BATCH_SIZE = 500;
+    // Сколько ников загружается одним COPY в PostgreSQL
+    private static final int COPY_BATCH_SIZE = 10000;
+    // Ограничение на число параметров в одном IN (...)
+    private static final int MAX_LOOKUP_BATCH_SIZE = 500;
     private static DatabaseManager INSTANCE;
     private HikariDataSource dataSource;
     private final VelocityCoolList plugin;
     private DatabaseType databaseType;
+    private SqlDialect dialect;
+    private DatabaseExecutor executor;
+    // Объединение проверок разных ников в один запрос, null если выключено
+    private LookupBatcher lookupBatcher;
+    // Отложенная запись добавлений и удалений пачками, null если выключена
+    private WriteBehindQueue writeBehind;
+    // Писать ли изменения в whitelist_changes для других прокси
+    private boolean changeLog;
+    // Незавершенные проверки по нормализованному нику: повторные запросы ждут тот же результат
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlightLookups = new ConcurrentHashMap<>();
+    private final PoolMetrics poolMetrics = new PoolMetrics();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder coalescedLookups = new LongAdder();
     
     public DatabaseManager(VelocityCoolList plugin) {
         this.plugin = plugin;
@@ -29,10 +68,13 @@ public class DatabaseManager {
         return INSTANCE;
     }
     
+    @Override
     public void initialize() {
         // Получаем тип базы данных из конфигурации
         String dbTypeStr = Config.getInstance().getString("database.type");
         this.databaseType = DatabaseType.fromString(dbTypeStr != null ? dbTypeStr : "sqlite");
+        this.dialect = SqlDialect.forType(databaseType);
+        this.changeLog = Config.getInstance().getBoolean("sync.enabled");
         
         VelocityCoolList.LOGGER.info("Инициализация базы данных: {}", databaseType.getName());
         
@@ -41,15 +83,31 @@ public class DatabaseManager {
         switch (databaseType) {
             case SQLITE -> setupSQLite(config);
             case MYSQL -> setupMySQL(config);
+            case POSTGRESQL -> setupPostgreSQL(config);
         }
         
-        config.setMaximumPoolSize(10);
+        int poolSize = Math.max(2, Config.getInstance().getInt("database.pool_size"));
+        config.setMaximumPoolSize(poolSize);
         config.setConnectionTimeout(30000);
         config.setIdleTimeout(600000);
         config.setMaxLifetime(1800000);
+        config.setMetricsTrackerFactory(poolMetrics);
         
         try {
             this.dataSource = new HikariDataSource(config);
+            this.executor = new DatabaseExecutor(poolSize,
+                    Math.max(1, Config.getInstance().getInt("database.queue_size")),
+                    Config.getInstance().getBoolean("database.virtual_threads"));
+            if (Config.getInstance().getBoolean("database.lookup_batch.enabled")) {
+                this.lookupBatcher = new LookupBatcher(this::queryContainsAny,
+                        Config.getInstance().getInt("database.lookup_batch.window_ms"),
+                        Math.min(MAX_LOOKUP_BATCH_SIZE, Config.getInstance().getInt("database.lookup_batch.max_size")));
+            }
+            if (Config.getInstance().getBoolean("database.write_behind.enabled")) {
+                this.writeBehind = new WriteBehindQueue(this::writeBehindBatch,
+                        Config.getInstance().getInt("database.write_behind.interval_ms"),
+                        Config.getInstance().getInt("database.write_behind.max_size"));
+            }
             createTables();
             VelocityCoolList.LOGGER.info("База данных успешно инициализирована");
         } catch (Exception e) {
@@ -96,32 +154,77 @@ public class DatabaseManager {
         config.addDataSourceProperty("maintainTimeStats", "false");
     }
     
-    private void createTables() throws SQLException {
-        String createTableSQL;
+    private void setupPostgreSQL(HikariConfig config) {
+        String host = Config.getInstance().getString("database.postgresql.host");
+        int port = Config.getInstance().getInt("database.postgresql.port");
+        String database = Config.getInstance().getString("database.postgresql.database");
+        String username = Config.getInstance().getString("database.postgresql.username");
+        String password = Config.getInstance().getString("database.postgresql.password");
         
-        if (databaseType == DatabaseType.SQLITE) {
-            createTableSQL = """
-                CREATE TABLE IF NOT EXISTS whitelist (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    username VARCHAR(255) NOT NULL UNIQUE COLLATE NOCASE,
-                    added_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                )
-                """;
-        } else {
-            createTableSQL = """
-                CREATE TABLE IF NOT EXISTS whitelist (
-                    id INT AUTO_INCREMENT PRIMARY KEY,
-                    username VARCHAR(255) NOT NULL UNIQUE,
-                    added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                    INDEX idx_username (username)
-                ) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci
-                """;
-        }
+        config.setJdbcUrl(String.format("jdbc:postgresql://%s:%d/%s", host, port, database));
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setDriverClassName("org.postgresql.Driver");
         
-        try (Connection connection = getConnection();
-             Statement statement = connection.createStatement()) {
-            statement.execute(createTableSQL);
+        // PostgreSQL specific settings
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+        config.addDataSourceProperty("prepareThreshold", "1");
+        config.addDataSourceProperty("ApplicationName", "VelocityCoolList");
+    }
+    
+    private void createTables() throws SQLException {
+        try (Connection connection = getConnection()) {
+            dialect.createSchema(connection);
+        }
+    }
+    
+    private <T> CompletableFuture<T> supply(DatabaseExecutor.Lane lane, DatabaseOperation operation, Supplier<T> task) {
+        return supply(lane, operation, null, task);
+    }
+    
+    /**
+     * Запускает задачу на полосе и записывает время ее выполнения в метрики
+     * и событие JFR (если оно включено в записи)
+     *
+     * @param username ник, к которому относится операция, или null
+     */
+    private <T> CompletableFuture<T> supply(DatabaseExecutor.Lane lane, DatabaseOperation operation, String username, Supplier<T> task) {
+        return executor.supply(lane, () -> {
+            DatabaseOperationEvent event = new DatabaseOperationEvent();
+            event.begin();
+            long started = System.nanoTime();
+            String result = "error";
+            try {
+                T value = task.get();
+                result = value instanceof Boolean ? value.toString() : "ok";
+                return value;
+            } finally {
+                WhitelistMetrics.getInstance().recordDatabase(operation, System.nanoTime() - started);
+                if (event.shouldCommit()) {
+                    event.operation = operation.getMetricName();
+                    event.usernameHash = JfrEvents.usernameHash(username);
+                    event.backend = databaseType.getName();
+                    event.result = result;
+                    event.commit();
+                }
+            }
+        });
+    }
+    
+    /**
+     * С отложенной записью сначала дожидается записи очереди, чтобы массовые
+     * операции и чтение видели все принятые до них добавления и удаления
+     */
+    private <T> CompletableFuture<T> afterPendingWrites(Supplier<CompletableFuture<T>> operation) {
+        if (writeBehind == null) {
+            return operation.get();
         }
+        return writeBehind.drain().thenCompose(ignored -> operation.get());
+    }
+    
+    private static void logError(String message, Object... args) {
+        WhitelistMetrics.getInstance().recordDatabaseError();
+        VelocityCoolList.LOGGER.error(message, args);
     }
     
     public Connection getConnection() throws SQLException {
@@ -131,81 +234,473 @@ public class DatabaseManager {
         return dataSource.getConnection();
     }
     
+    /**
+     * С отложенной записью future завершается после коммита пачки,
+     * а при ошибке записи - с исключением, а не false
+     */
+    @Override
     public CompletableFuture<Boolean> addPlayer(String username) {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql = "INSERT OR IGNORE INTO whitelist (username) VALUES (?)";
-            if (databaseType == DatabaseType.MYSQL) {
-                sql = "INSERT IGNORE INTO whitelist (username) VALUES (?)";
-            }
-            
+        if (writeBehind != null) {
+            return writeBehind.submit(WhitelistChange.Operation.ADD, username);
+        }
+        
+        return supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.ADD, username, () -> {
             try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                 PreparedStatement statement = connection.prepareStatement(dialect.insertIgnore())) {
                 
                 statement.setString(1, username);
-                int rowsAffected = statement.executeUpdate();
-                return rowsAffected > 0;
+                statement.setString(2, Usernames.normalize(username));
+                return inTransaction(connection, () -> {
+                    int rowsAffected = insertReplacingExpired(connection, statement, username);
+                    if (rowsAffected > 0) {
+                        logChange(connection, WhitelistChange.Operation.ADD, username);
+                    }
+                    return rowsAffected > 0;
+                });
                 
             } catch (SQLException e) {
-                VelocityCoolList.LOGGER.error("Ошибка при добавлении игрока в whitelist: ", e);
-                return false;
+                logError("Ошибка при добавлении игрока в whitelist: ", e);
+                throw new CompletionException(e);
             }
         });
     }
     
-    public CompletableFuture<Boolean> removePlayer(String username) {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql;
-            if (databaseType == DatabaseType.SQLITE) {
-                sql = "DELETE FROM whitelist WHERE username = ? COLLATE NOCASE";
-            } else {
-                sql = "DELETE FROM whitelist WHERE LOWER(username) = LOWER(?)";
-            }
-            
+    @Override
+    public CompletableFuture<Boolean> addTemporaryPlayer(String username, long expiresAt) {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.ADD, username, () -> {
             try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                 PreparedStatement statement = connection.prepareStatement(dialect.insertIgnoreExpiring())) {
                 
                 statement.setString(1, username);
-                int rowsAffected = statement.executeUpdate();
-                return rowsAffected > 0;
+                statement.setString(2, Usernames.normalize(username));
+                statement.setLong(3, expiresAt);
+                return inTransaction(connection, () -> {
+                    int rowsAffected = insertReplacingExpired(connection, statement, username);
+                    if (rowsAffected > 0) {
+                        logChange(connection, WhitelistChange.Operation.ADD, username, expiresAt);
+                    }
+                    return rowsAffected > 0;
+                });
                 
             } catch (SQLException e) {
-                VelocityCoolList.LOGGER.error("Ошибка при удалении игрока из whitelist: ", e);
-                return false;
+                logError("Ошибка при добавлении игрока в whitelist: ", e);
+                throw new CompletionException(e);
+            }
+        }));
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> removePlayer(String username) {
+        if (writeBehind != null) {
+            return writeBehind.submit(WhitelistChange.Operation.REMOVE, username);
+        }
+        
+        return supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.REMOVE, username, () -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(dialect.delete())) {
+                
+                statement.setString(1, Usernames.normalize(username));
+                return withChangeLog(connection, () -> {
+                    int rowsAffected = statement.executeUpdate();
+                    if (rowsAffected > 0) {
+                        logChange(connection, WhitelistChange.Operation.REMOVE, username);
+                    }
+                    return rowsAffected > 0;
+                });
+                
+            } catch (SQLException e) {
+                logError("Ошибка при удалении игрока из whitelist: ", e);
+                throw new CompletionException(e);
             }
         });
     }
     
-    public CompletableFuture<Boolean> containsPlayer(String username) {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql;
-            if (databaseType == DatabaseType.SQLITE) {
-                sql = "SELECT 1 FROM whitelist WHERE username = ? COLLATE NOCASE LIMIT 1";
-            } else {
-                sql = "SELECT 1 FROM whitelist WHERE LOWER(username) = LOWER(?) LIMIT 1";
+    /**
+     * Массовое добавление: JDBC batch, по одной транзакции на BATCH_SIZE ников.
+     * Для MySQL пакет переписывается в один многострочный INSERT
+     * благодаря rewriteBatchedStatements, для PostgreSQL ники загружаются через COPY
+     */
+    @Override
+    public CompletableFuture<BatchResult> addPlayers(Collection<String> usernames) {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.BATCH_WRITE, () -> {
+            if (dialect instanceof SqlDialect.PostgresDialect postgres) {
+                return executeCopy(postgres, usernames);
+            }
+            
+            return executeBatch(dialect.insertIgnore(), WhitelistChange.Operation.ADD, usernames, (statement, username) -> {
+                statement.setString(1, username);
+                statement.setString(2, Usernames.normalize(username));
+            });
+        }));
+    }
+    
+    @Override
+    public CompletableFuture<BatchResult> removePlayers(Collection<String> usernames) {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.BATCH_WRITE, () -> {
+            return executeBatch(dialect.delete(), WhitelistChange.Operation.REMOVE, usernames,
+                    (statement, username) -> statement.setString(1, Usernames.normalize(username)));
+        }));
+    }
+    
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement statement, String username) throws SQLException;
+    }
+    
+    private BatchResult executeBatch(String sql, WhitelistChange.Operation operation, Collection<String> usernames, StatementBinder binder) {
+        List<BatchResult.Chunk> chunks = new ArrayList<>();
+        
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             PreparedStatement changes = changeLog ? connection.prepareStatement(dialect.insertChange()) : null) {
+            
+            connection.setAutoCommit(false);
+            try {
+                // Переписанный драйвером INSERT не сообщает, какие ники добавлены,
+                // поэтому добавленные считаются по ключам пакета в таблице
+                boolean countKeys = operation == WhitelistChange.Operation.ADD && dialect.rewritesBatchedInserts();
+                List<String> keys = new ArrayList<>(Math.min(usernames.size(), BATCH_SIZE));
+                for (String username : usernames) {
+                    binder.bind(statement, username);
+                    statement.addBatch();
+                    keys.add(Usernames.normalize(username));
+                    
+                    // В журнал пишутся все ники пакета - повторное применение безвредно
+                    if (changes != null) {
+                        bindChange(changes, operation, username);
+                        changes.addBatch();
+                    }
+                    
+                    if (keys.size() == BATCH_SIZE) {
+                        if (operation == WhitelistChange.Operation.ADD) {
+                            deleteExpired(connection, keys);
+                        }
+                        chunks.add(commitChunk(connection, statement, changes, keys, countKeys));
+                        keys.clear();
+                    }
+                }
+                
+                if (!keys.isEmpty()) {
+                    if (operation == WhitelistChange.Operation.ADD) {
+                        deleteExpired(connection, keys);
+                    }
+                    chunks.add(commitChunk(connection, statement, changes, keys, countKeys));
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            
+            return new BatchResult(chunks, true);
+            
+        } catch (SQLException e) {
+            logError("Ошибка при массовом изменении whitelist (записано пакетов: {}): ", chunks.size(), e);
+            return new BatchResult(chunks, false);
+        }
+    }
+    
+    private BatchResult executeCopy(SqlDialect.PostgresDialect postgres, Collection<String> usernames) {
+        List<BatchResult.Chunk> chunks = new ArrayList<>();
+        
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                List<String> chunk = new ArrayList<>(Math.min(usernames.size(), COPY_BATCH_SIZE));
+                for (String username : usernames) {
+                    chunk.add(username);
+                    
+                    if (chunk.size() == COPY_BATCH_SIZE) {
+                        deleteExpired(connection, chunk);
+                        chunks.add(postgres.copyInsert(connection, chunk, changeLog));
+                        connection.commit();
+                        chunk.clear();
+                    }
+                }
+                
+                if (!chunk.isEmpty()) {
+                    deleteExpired(connection, chunk);
+                    chunks.add(postgres.copyInsert(connection, chunk, changeLog));
+                    connection.commit();
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            
+            return new BatchResult(chunks, true);
+            
+        } catch (SQLException e) {
+            logError("Ошибка при массовом добавлении в whitelist через COPY (записано пакетов: {}): ", chunks.size(), e);
+            return new BatchResult(chunks, false);
+        }
+    }
+    
+    /**
+     * Пачка отложенной записи одной транзакцией. Подряд идущие добавления
+     * и удаления отправляются JDBC batch, порядок очереди сохраняется.
+     * Если драйвер переписывает пакет INSERT в один запрос, добавления
+     * выполняются по одному: иначе нельзя узнать, какие ники были новыми
+     */
+    private boolean[] writeBehindBatch(List<WriteBehindQueue.Write> writes) throws SQLException {
+        long started = System.nanoTime();
+        boolean[] changed = new boolean[writes.size()];
+        
+        try (Connection connection = getConnection();
+             PreparedStatement insert = connection.prepareStatement(dialect.insertIgnore());
+             PreparedStatement delete = connection.prepareStatement(dialect.delete());
+             PreparedStatement changes = changeLog ? connection.prepareStatement(dialect.insertChange()) : null) {
+            
+            connection.setAutoCommit(false);
+            try {
+                int runStart = 0;
+                for (int i = 0; i < writes.size(); i++) {
+                    WriteBehindQueue.Write write = writes.get(i);
+                    if (write.operation() != writes.get(runStart).operation()) {
+                        executeRun(connection, writes, runStart, i, insert, delete, changes, changed);
+                        runStart = i;
+                    }
+                }
+                executeRun(connection, writes, runStart, writes.size(), insert, delete, changes, changed);
+                
+                if (changes != null) {
+                    changes.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            
+            return changed;
+            
+        } catch (SQLException e) {
+            logError("Ошибка при отложенной записи {} изменений whitelist: ", writes.size(), e);
+            throw e;
+        } finally {
+            WhitelistMetrics.getInstance().recordDatabase(DatabaseOperation.BATCH_WRITE, System.nanoTime() - started);
+        }
+    }
+    
+    private void executeRun(Connection connection, List<WriteBehindQueue.Write> writes, int from, int to, PreparedStatement insert,
+                            PreparedStatement delete, PreparedStatement changes, boolean[] changed) throws SQLException {
+        if (from == to) {
+            return;
+        }
+        
+        WhitelistChange.Operation operation = writes.get(from).operation();
+        int[] counts;
+        if (operation == WhitelistChange.Operation.ADD) {
+            counts = executeInserts(connection, insert, writes.subList(from, to));
+        } else {
+            for (int i = from; i < to; i++) {
+                delete.setString(1, Usernames.normalize(writes.get(i).username()));
+                delete.addBatch();
             }
+            counts = delete.executeBatch();
+        }
+        
+        for (int i = from; i < to; i++) {
+            changed[i] = counts[i - from] > 0;
             
+            if (changed[i] && changes != null) {
+                bindChange(changes, operation, writes.get(i).username());
+                changes.addBatch();
+            }
+        }
+    }
+    
+    /**
+     * Число добавленных строк для каждого ника. Переписанный драйвером пакет
+     * возвращает SUCCESS_NO_INFO для всех строк, поэтому тогда INSERT
+     * выполняется отдельно для каждого ника в той же транзакции
+     */
+    private int[] executeInserts(Connection connection, PreparedStatement insert, List<WriteBehindQueue.Write> writes) throws SQLException {
+        boolean perRow = dialect.rewritesBatchedInserts();
+        int[] counts = new int[writes.size()];
+        for (int i = 0; i < writes.size(); i++) {
+            String username = writes.get(i).username();
+            insert.setString(1, username);
+            insert.setString(2, Usernames.normalize(username));
+            if (perRow) {
+                counts[i] = insertReplacingExpired(connection, insert, username);
+            } else {
+                insert.addBatch();
+            }
+        }
+        if (perRow) {
+            return counts;
+        }
+        
+        counts = insert.executeBatch();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                String username = writes.get(i).username();
+                insert.setString(1, username);
+                insert.setString(2, Usernames.normalize(username));
+                counts[i] = insertReplacingExpired(connection, insert, username);
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * @param countKeys считать добавленные по числу ключей пакета в таблице до и после
+     *                  INSERT в той же транзакции, а не по ответу драйвера
+     */
+    private BatchResult.Chunk commitChunk(Connection connection, PreparedStatement statement, PreparedStatement changes,
+                                          List<String> keys, boolean countKeys) throws SQLException {
+        int before = countKeys ? countKeys(connection, keys) : 0;
+        int[] counts = statement.executeBatch();
+        int affected;
+        if (countKeys) {
+            affected = countKeys(connection, keys) - before;
+        } else {
+            affected = 0;
+            for (int count : counts) {
+                if (count > 0) {
+                    affected++;
+                }
+            }
+        }
+        
+        if (changes != null) {
+            changes.executeBatch();
+        }
+        connection.commit();
+        
+        return new BatchResult.Chunk(affected, keys.size() - affected);
+    }
+    
+    private int countKeys(Connection connection, List<String> keys) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(dialect.countKeys(keys.size()))) {
+            for (int i = 0; i < keys.size(); i++) {
+                statement.setString(i + 1, keys.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+    
+    /**
+     * Одновременные проверки одного ника объединяются в один запрос к БД.
+     * Каждый вызывающий получает свою копию future, чтобы таймауты
+     * и отмена одного не влияли на остальных.
+     * При входе игрока ник проверяется по кэшу Whitelist, поэтому сюда
+     * приходят только проверки при незагруженном кэше
+     */
+    @Override
+    public CompletableFuture<Boolean> containsPlayer(String username) {
+        String key = Usernames.normalize(username);
+        lookups.increment();
+
+        CompletableFuture<Boolean> pending = inFlightLookups.get(key);
+        if (pending == null) {
+            CompletableFuture<Boolean> created = new CompletableFuture<>();
+            pending = inFlightLookups.putIfAbsent(key, created);
+            if (pending == null) {
+                queryContains(key).whenComplete((result, error) -> {
+                    // Сначала убираем из ожидающих: следующий вызов должен прочитать свежее значение
+                    inFlightLookups.remove(key, created);
+                    if (error != null) {
+                        created.completeExceptionally(error);
+                    } else {
+                        created.complete(result);
+                    }
+                });
+                return created.copy();
+            }
+        }
+
+        coalescedLookups.increment();
+        return pending.copy();
+    }
+
+    /**
+     * Сколько всего проверок ника пришло в БД-слой
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Сколько проверок присоединились к уже выполняющемуся запросу того же ника
+     */
+    public long getCoalescedLookupCount() {
+        return coalescedLookups.sum();
+    }
+
+    private CompletableFuture<Boolean> queryContains(String key) {
+        if (lookupBatcher != null) {
+            return lookupBatcher.submit(key);
+        }
+
+        return supply(DatabaseExecutor.Lane.LOOKUP, DatabaseOperation.CONTAINS, key, () -> {
             try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                 PreparedStatement statement = connection.prepareStatement(dialect.contains())) {
                 
-                statement.setString(1, username);
+                statement.setString(1, key);
+                statement.setLong(2, System.currentTimeMillis());
                 try (ResultSet resultSet = statement.executeQuery()) {
                     return resultSet.next();
                 }
                 
             } catch (SQLException e) {
-                VelocityCoolList.LOGGER.error("Ошибка при проверке игрока в whitelist: ", e);
-                return false;
+                logError("Ошибка при проверке игрока в whitelist: ", e);
+                throw new CompletionException(e);
             }
         });
     }
     
+    private CompletableFuture<Set<String>> queryContainsAny(List<String> keys) {
+        return supply(DatabaseExecutor.Lane.LOOKUP, DatabaseOperation.CONTAINS, () -> {
+            Set<String> found = new HashSet<>();
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(dialect.containsAny(keys.size()))) {
+
+                for (int i = 0; i < keys.size(); i++) {
+                    statement.setString(i + 1, keys.get(i));
+                }
+                statement.setLong(keys.size() + 1, System.currentTimeMillis());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        found.add(resultSet.getString(1));
+                    }
+                }
+                return found;
+
+            } catch (SQLException e) {
+                logError("Ошибка при проверке {} игроков в whitelist: ", keys.size(), e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Сколько запросов IN (...) выполнено и сколько проверок в них вошло
+     */
+    public long getLookupBatchCount() {
+        return lookupBatcher != null ? lookupBatcher.getBatchCount() : 0;
+    }
+
+    public long getBatchedLookupCount() {
+        return lookupBatcher != null ? lookupBatcher.getBatchedLookupCount() : 0;
+    }
+
+    @Override
     public CompletableFuture<List<String>> getAllPlayers() {
-        return CompletableFuture.supplyAsync(() -> {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.READ, () -> {
             List<String> players = new ArrayList<>();
-            String sql = "SELECT username FROM whitelist ORDER BY username";
             
             try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql);
+                 PreparedStatement statement = connection.prepareStatement(dialect.selectAll());
                  ResultSet resultSet = statement.executeQuery()) {
                 
                 while (resultSet.next()) {
@@ -213,48 +708,468 @@ public class DatabaseManager {
                 }
                 
             } catch (SQLException e) {
-                VelocityCoolList.LOGGER.error("Ошибка при получении списка игроков: ", e);
+                logError("Ошибка при получении списка игроков: ", e);
+                throw new CompletionException(e);
             }
             
             return players;
-        });
+        }));
     }
     
-    public CompletableFuture<Boolean> clearWhitelist() {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql = "DELETE FROM whitelist";
+    /**
+     * Страница списка в алфавитном порядке. С after используется keyset-запрос
+     * (username_key > ?), который идет по индексу сразу с нужного места;
+     * без него страница выбирается смещением offset
+     */
+    @Override
+    public CompletableFuture<List<String>> getPlayersPage(String after, int offset, int limit) {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.READ, () -> {
+            String sql = after != null ? dialect.selectPageAfter() : dialect.selectPage();
             
             try (Connection connection = getConnection();
                  PreparedStatement statement = connection.prepareStatement(sql)) {
                 
-                statement.executeUpdate();
-                return true;
+                // Ники с истекшим сроком, которые еще не удалила проверка сроков, не показываются
+                long now = System.currentTimeMillis();
+                if (after != null) {
+                    statement.setString(1, Usernames.normalize(after));
+                    statement.setLong(2, now);
+                    statement.setInt(3, limit);
+                } else {
+                    statement.setLong(1, now);
+                    statement.setInt(2, limit);
+                    statement.setInt(3, offset);
+                }
+                
+                List<String> players = new ArrayList<>(limit);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        players.add(resultSet.getString(1));
+                    }
+                }
+                return players;
+                
+            } catch (SQLException e) {
+                logError("Ошибка при получении страницы списка игроков: ", e);
+                throw new CompletionException(e);
+            }
+        }));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> countPlayers() {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.READ, () -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(dialect.count());
+                 ResultSet resultSet = statement.executeQuery()) {
+                
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+                
+            } catch (SQLException e) {
+                logError("Ошибка при подсчете игроков в whitelist: ", e);
+                throw new CompletionException(e);
+            }
+        }));
+    }
+    
+    /**
+     * Потоковое чтение всех ников курсором, без загрузки списка в память.
+     * Размер выборки задает диалект (для MySQL - построчная выдача результата)
+     *
+     * @return число прочитанных ников
+     */
+    @Override
+    public CompletableFuture<Long> forEachPlayer(UsernameConsumer consumer) {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.READ, () -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(dialect.selectAll(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                
+                statement.setFetchSize(dialect.streamingFetchSize());
+                
+                boolean transaction = dialect.streamingNeedsTransaction();
+                if (transaction) {
+                    connection.setAutoCommit(false);
+                }
+                
+                long count = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(resultSet.getString(1));
+                        count++;
+                    }
+                } finally {
+                    if (transaction) {
+                        connection.setAutoCommit(true);
+                    }
+                }
+                return count;
+                
+            } catch (SQLException | IOException e) {
+                logError("Ошибка при потоковом чтении списка игроков: ", e);
+                throw new CompletionException(e);
+            }
+        }));
+    }
+    
+    @Override
+    public CompletableFuture<Map<String, Long>> getExpiringPlayers() {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.READ, () -> {
+            Map<String, Long> players = new HashMap<>();
+            
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(dialect.selectExpiring());
+                 ResultSet resultSet = statement.executeQuery()) {
+                
+                while (resultSet.next()) {
+                    players.put(resultSet.getString(1), resultSet.getLong(2));
+                }
+                return players;
+                
+            } catch (SQLException e) {
+                logError("Ошибка при чтении сроков действия whitelist: ", e);
+                throw new CompletionException(e);
+            }
+        }));
+    }
+    
+    /**
+     * Выборка по индексу expires_at и удаление одной транзакцией. Удаления
+     * пишутся в журнал изменений, чтобы другие прокси тоже убрали ники из кэша
+     */
+    @Override
+    public CompletableFuture<List<String>> removeExpired(long now, int limit) {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.EXPIRE, () -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement select = connection.prepareStatement(dialect.selectExpired());
+                 PreparedStatement delete = connection.prepareStatement(dialect.deleteExpired());
+                 PreparedStatement changes = changeLog ? connection.prepareStatement(dialect.insertChange()) : null) {
+                
+                List<String> expired = new ArrayList<>();
+                select.setLong(1, now);
+                select.setInt(2, limit);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        expired.add(resultSet.getString(1));
+                    }
+                }
+                if (expired.isEmpty()) {
+                    return expired;
+                }
+                
+                connection.setAutoCommit(false);
+                try {
+                    for (String username : expired) {
+                        delete.setString(1, Usernames.normalize(username));
+                        delete.setLong(2, now);
+                        delete.addBatch();
+                    }
+                    
+                    int[] counts = delete.executeBatch();
+                    List<String> removed = new ArrayList<>(expired.size());
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                            removed.add(expired.get(i));
+                            if (changes != null) {
+                                bindChange(changes, WhitelistChange.Operation.REMOVE, expired.get(i));
+                                changes.addBatch();
+                            }
+                        }
+                    }
+                    
+                    if (changes != null && !removed.isEmpty()) {
+                        changes.executeBatch();
+                    }
+                    connection.commit();
+                    return removed;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                
+            } catch (SQLException e) {
+                logError("Ошибка при удалении игроков с истекшим сроком: ", e);
+                throw new CompletionException(e);
+            }
+        }));
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> clearWhitelist() {
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.CLEAR, () -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(dialect.clear())) {
+                
+                return withChangeLog(connection, () -> {
+                    statement.executeUpdate();
+                    logChange(connection, WhitelistChange.Operation.CLEAR, null);
+                    return true;
+                });
                 
             } catch (SQLException e) {
-                VelocityCoolList.LOGGER.error("Ошибка при очистке whitelist: ", e);
+                logError("Ошибка при очистке whitelist: ", e);
                 return false;
             }
-        });
+        }));
     }
     
+    @Override
     public CompletableFuture<Boolean> isEmpty() {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql = "SELECT 1 FROM whitelist LIMIT 1";
-            
+        return afterPendingWrites(() -> supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.READ, () -> {
             try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql);
+                 PreparedStatement statement = connection.prepareStatement(dialect.isEmpty());
                  ResultSet resultSet = statement.executeQuery()) {
                 
                 return !resultSet.next();
                 
             } catch (SQLException e) {
-                VelocityCoolList.LOGGER.error("Ошибка при проверке пустоты whitelist: ", e);
+                logError("Ошибка при проверке пустоты whitelist: ", e);
                 return true;
             }
+        }));
+    }
+    
+    /**
+     * Изменения с номером больше seq, по возрастанию номера
+     */
+    @Override
+    public CompletableFuture<List<WhitelistChange>> getChangesSince(long seq, int limit) {
+        return supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.CHANGE_LOG, () -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(dialect.selectChangesSince())) {
+                
+                statement.setLong(1, seq);
+                statement.setInt(2, limit);
+                
+                List<WhitelistChange> changes = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        WhitelistChange.Operation operation = WhitelistChange.Operation.fromCode(resultSet.getString(2));
+                        if (operation != null) {
+                            changes.add(new WhitelistChange(resultSet.getLong(1), operation, resultSet.getString(3), resultSet.getLong(4)));
+                        }
+                    }
+                }
+                return changes;
+                
+            } catch (SQLException e) {
+                logError("Ошибка при чтении журнала изменений whitelist: ", e);
+                throw new CompletionException(e);
+            }
         });
     }
     
+    /**
+     * Номер последнего изменения или 0, если журнал пуст
+     */
+    @Override
+    public CompletableFuture<Long> getLatestChangeSeq() {
+        return queryChangeSeq(dialect.maxChangeSeq());
+    }
+    
+    /**
+     * Номер самого старого изменения в журнале или 0, если журнал пуст
+     */
+    @Override
+    public CompletableFuture<Long> getOldestChangeSeq() {
+        return queryChangeSeq(dialect.minChangeSeq());
+    }
+    
+    private CompletableFuture<Long> queryChangeSeq(String sql) {
+        return supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.CHANGE_LOG, () -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+                
+            } catch (SQLException e) {
+                logError("Ошибка при чтении журнала изменений whitelist: ", e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Удаляет из журнала изменения старше указанного времени
+     */
+    @Override
+    public CompletableFuture<Integer> trimChanges(long olderThanMillis) {
+        return supply(DatabaseExecutor.Lane.GENERAL, DatabaseOperation.CHANGE_LOG, () -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(dialect.trimChanges())) {
+                
+                statement.setLong(1, olderThanMillis);
+                return statement.executeUpdate();
+                
+            } catch (SQLException e) {
+                logError("Ошибка при очистке журнала изменений whitelist: ", e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+    
+    /**
+     * При включенном журнале выполняет изменение и запись в журнал одной транзакцией
+     */
+    private <T> T withChangeLog(Connection connection, SqlCall<T> call) throws SQLException {
+        if (!changeLog) {
+            return call.call();
+        }
+        
+        return inTransaction(connection, call);
+    }
+    
+    private static <T> T inTransaction(Connection connection, SqlCall<T> call) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            T result = call.call();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+    
+    /**
+     * INSERT из подготовленного запроса. Если ник уже есть, но его срок истек
+     * и проверка сроков его еще не удалила, строка удаляется и INSERT повторяется:
+     * иначе ник не добавился бы, а потом его удалила бы проверка сроков.
+     * Вызывается в транзакции
+     *
+     * @return число добавленных строк
+     */
+    private int insertReplacingExpired(Connection connection, PreparedStatement insert, String username) throws SQLException {
+        int rowsAffected = insert.executeUpdate();
+        if (rowsAffected == 0 && deleteExpired(connection, List.of(username))) {
+            rowsAffected = insert.executeUpdate();
+        }
+        return rowsAffected;
+    }
+    
+    /**
+     * Удаляет строки переданных ников с истекшим сроком перед их добавлением.
+     * В журнал изменений не пишется: за удалением в той же транзакции идет ADD
+     *
+     * @return true, если удалена хотя бы одна строка
+     */
+    private boolean deleteExpired(Connection connection, List<String> usernames) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement statement = connection.prepareStatement(dialect.deleteExpired())) {
+            for (String username : usernames) {
+                statement.setString(1, Usernames.normalize(username));
+                statement.setLong(2, now);
+                statement.addBatch();
+            }
+            
+            for (int count : statement.executeBatch()) {
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private void logChange(Connection connection, WhitelistChange.Operation operation, String username) throws SQLException {
+        logChange(connection, operation, username, 0);
+    }
+    
+    /**
+     * @param expiresAt срок действия добавленного ника, 0 - бессрочно
+     */
+    private void logChange(Connection connection, WhitelistChange.Operation operation, String username, long expiresAt) throws SQLException {
+        if (!changeLog) {
+            return;
+        }
+        
+        try (PreparedStatement statement = connection.prepareStatement(dialect.insertChange())) {
+            bindChange(statement, operation, username, expiresAt);
+            statement.executeUpdate();
+        }
+    }
+    
+    private static void bindChange(PreparedStatement statement, WhitelistChange.Operation operation, String username) throws SQLException {
+        bindChange(statement, operation, username, 0);
+    }
+    
+    private static void bindChange(PreparedStatement statement, WhitelistChange.Operation operation, String username, long expiresAt) throws SQLException {
+        statement.setString(1, operation.getCode());
+        statement.setString(2, username);
+        statement.setLong(3, System.currentTimeMillis());
+        if (expiresAt != 0) {
+            statement.setLong(4, expiresAt);
+        } else {
+            statement.setNull(4, Types.BIGINT);
+        }
+    }
+    
+    @Override
+    public DatabaseType getDatabaseType() {
+        return databaseType;
+    }
+    
+    @Override
+    public boolean isChangeLogEnabled() {
+        return changeLog;
+    }
+    
+    @Override
+    public boolean isWriteBehindEnabled() {
+        return writeBehind != null;
+    }
+    
+    /**
+     * Сколько пачек отложенной записи закоммичено и сколько изменений в них вошло
+     */
+    public long getWriteBehindFlushCount() {
+        return writeBehind != null ? writeBehind.getFlushCount() : 0;
+    }
+    
+    public long getWriteBehindWriteCount() {
+        return writeBehind != null ? writeBehind.getWriteCount() : 0;
+    }
+    
+    /**
+     * Состояние пула Hikari: активные, свободные и ожидающие соединения.
+     * null, пока пул не создан
+     */
+    public HikariPoolMXBean getPoolMXBean() {
+        return dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+    }
+    
+    public PoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+    
+    public DatabaseExecutor getExecutor() {
+        return executor;
+    }
+    
+    @Override
     public void shutdown() {
+        // Сначала записываем очередь и даем завершиться начатым операциям, потом закрываем пул
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+        
+        if (lookupBatcher != null) {
+            lookupBatcher.shutdown();
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+        
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             VelocityCoolList.LOGGER.info("База данных отключена");
@@ -2,7 +2,9 @@ package com.atikinbtw.velocitycoollist.database;
 
 public enum DatabaseType {
     SQLITE("sqlite"),
-    MYSQL("mysql");
+    MYSQL("mysql"),
+    POSTGRESQL("postgresql"),
+    FILE("file");
     
     private final String name;
     
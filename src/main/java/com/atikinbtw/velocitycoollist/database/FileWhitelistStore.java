@@ -0,0 +1,801 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import com.atikinbtw.velocitycoollist.Config;
+import com.atikinbtw.velocitycoollist.Usernames;
+import com.atikinbtw.velocitycoollist.VelocityCoolList;
+import com.atikinbtw.velocitycoollist.metrics.DatabaseOperation;
+import com.atikinbtw.velocitycoollist.metrics.WhitelistMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Хранилище вайтлиста в файлах, без SQLite и пула соединений, для одного прокси.
+ * Ники держатся в памяти, изменения дописываются в двоичный журнал whitelist-N.log.
+ * Один поток записи забирает все накопившиеся изменения и подтверждает их
+ * одним fsync (group commit). Когда журнал вырастает, в фоне сохраняется
+ * снимок whitelist.snapshot и старые журналы удаляются
+ * <p>
+ * Запись журнала: операция (A, T, R, C), длина ника (2 байта), ник в UTF-8,
+ * для T - срок действия (8 байт), CRC32. Недописанная при сбое запись
+ * в конце журнала отбрасывается при запуске
+ */
+public class FileWhitelistStore implements WhitelistStore {
+    private static final int LOG_MAGIC = 0x56434C4C; // VCLL
+    private static final int SNAPSHOT_MAGIC = 0x56434C53; // VCLS
+    // 2: срок действия в снимке и записи T в журнале
+    private static final byte FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 5;
+    private static final int RECORD_OVERHEAD = 7;
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+    // Сколько изменений подтверждается одним fsync, не больше
+    private static final int MAX_GROUP_SIZE = 1024;
+    // Журнал меньше этого размера не сжимается
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+    private static final String SNAPSHOT_FILE = "whitelist.snapshot";
+    private static final String LOG_PREFIX = "whitelist-";
+    private static final String LOG_SUFFIX = ".log";
+
+    private static final byte ADD = (byte) 'A';
+    private static final byte TIMED_ADD = (byte) 'T';
+    private static final byte REMOVE = (byte) 'R';
+    private static final byte CLEAR = (byte) 'C';
+    // Только в очереди: удаление ников, срок которых все еще истек, в журнал пишется как R
+    private static final byte EXPIRE = (byte) 'E';
+
+    // Ник по username_key, в порядке username_key - как ORDER BY в SQL-хранилище
+    private final ConcurrentSkipListMap<String, Entry> players = new ConcurrentSkipListMap<>();
+    // Ники со сроком действия в порядке истечения - как индекс по expires_at
+    private final ConcurrentSkipListSet<Expiry> expiries = new ConcurrentSkipListSet<>();
+    private final LinkedBlockingQueue<Mutation> queue = new LinkedBlockingQueue<>();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final Path directory;
+    private Thread writer;
+    private ExecutorService compactor;
+
+    // Защищен queue
+    private boolean closed;
+    // Используются только потоком записи (и initialize до его запуска)
+    private FileChannel log;
+    private long logGeneration;
+    private long logSize;
+    private volatile long snapshotSize;
+
+    /**
+     * @param expiresAt мс с эпохи, 0 - бессрочно
+     */
+    private record Entry(String username, long expiresAt) {
+    }
+
+    private record Expiry(long expiresAt, String key) implements Comparable<Expiry> {
+        @Override
+        public int compareTo(Expiry other) {
+            int result = Long.compare(expiresAt, other.expiresAt);
+            return result != 0 ? result : key.compareTo(other.key);
+        }
+    }
+
+    public FileWhitelistStore(VelocityCoolList plugin) {
+        this.directory = plugin.DATADIRECTORY;
+    }
+
+    @Override
+    public void initialize() {
+        VelocityCoolList.LOGGER.info("Инициализация файлового хранилища вайтлиста");
+        long started = System.nanoTime();
+
+        if (Config.getInstance().getBoolean("sync.enabled")) {
+            VelocityCoolList.LOGGER.warn("Синхронизация нескольких прокси не поддерживается файловым хранилищем, используйте mysql или postgresql");
+        }
+
+        try {
+            Files.createDirectories(directory);
+            long generation = loadSnapshot();
+            openLog(replayLogs(generation));
+        } catch (IOException e) {
+            VelocityCoolList.LOGGER.error("Ошибка при инициализации файлового хранилища: ", e);
+            throw new RuntimeException("Failed to initialize file storage", e);
+        }
+
+        compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VelocityCoolList-file-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer = new Thread(this::writeLoop, "VelocityCoolList-file-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        VelocityCoolList.LOGGER.info("Файловое хранилище загружено за {} мс: {} игроков, журнал {} байт",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), players.size(), logSize);
+    }
+
+    /**
+     * @return поколение первого журнала, не вошедшего в снимок
+     */
+    private long loadSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        CRC32 crc = new CRC32();
+        try (InputStream stream = Files.newInputStream(file)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(stream, 64 * 1024), crc);
+            DataInputStream in = new DataInputStream(checked);
+
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Неизвестный формат файла " + file);
+            }
+            byte version = readVersion(in, file);
+            long generation = in.readLong();
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String username = readName(in, in.readUnsignedShort());
+                long expiresAt = version >= 2 ? in.readLong() : 0;
+                put(Usernames.normalize(username), new Entry(username, expiresAt));
+            }
+
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Файл " + file + " поврежден: не совпадает контрольная сумма");
+            }
+
+            snapshotSize = Files.size(file);
+            return generation;
+        }
+    }
+
+    /**
+     * Применяет журналы начиная с поколения снимка, более старые удаляет
+     *
+     * @return поколение последнего журнала, в него продолжится запись
+     */
+    private long replayLogs(long snapshotGeneration) throws IOException {
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    logs.put(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())), file);
+                } catch (NumberFormatException ignored) {
+                    // Чужой файл с похожим именем
+                }
+            }
+        }
+
+        long last = snapshotGeneration;
+        for (Map.Entry<Long, Path> entry : logs.entrySet()) {
+            if (entry.getKey() < snapshotGeneration) {
+                // Уже вошел в снимок, но не был удален из-за остановки во время сжатия
+                Files.deleteIfExists(entry.getValue());
+                continue;
+            }
+
+            long valid = replayLog(entry.getValue());
+            last = entry.getKey();
+            if (valid < Files.size(entry.getValue())) {
+                VelocityCoolList.LOGGER.warn("Журнал {} обрезан до {} байт: последняя запись не была дописана", entry.getValue(), valid);
+                try (FileChannel channel = FileChannel.open(entry.getValue(), StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * @return размер журнала до первой поврежденной или недописанной записи
+     */
+    private long replayLog(Path file) throws IOException {
+        if (Files.size(file) < HEADER_SIZE) {
+            return 0;
+        }
+
+        try (InputStream stream = Files.newInputStream(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+            if (in.readInt() != LOG_MAGIC) {
+                throw new IOException("Неизвестный формат файла " + file);
+            }
+            readVersion(in, file);
+
+            long position = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            while (true) {
+                try {
+                    byte operation = in.readByte();
+                    int length = in.readUnsignedShort();
+                    byte[] name = in.readNBytes(length);
+                    if (name.length < length) {
+                        return position;
+                    }
+                    long expiresAt = operation == TIMED_ADD ? in.readLong() : 0;
+                    int checksum = in.readInt();
+
+                    updateChecksum(crc, operation, name, expiresAt);
+                    if (checksum != (int) crc.getValue()) {
+                        return position;
+                    }
+
+                    apply(operation, new String(name, StandardCharsets.UTF_8), expiresAt);
+                    position += RECORD_OVERHEAD + length + (operation == TIMED_ADD ? 8 : 0);
+                } catch (EOFException e) {
+                    return position;
+                }
+            }
+        }
+    }
+
+    private void apply(byte operation, String username, long expiresAt) {
+        switch (operation) {
+            case ADD, TIMED_ADD -> put(Usernames.normalize(username), new Entry(username, expiresAt));
+            case REMOVE -> put(Usernames.normalize(username), null);
+            case CLEAR -> clearAll();
+            default -> VelocityCoolList.LOGGER.warn("Неизвестная запись в журнале вайтлиста: {}", operation);
+        }
+    }
+
+    /**
+     * Записывает ник в список вместе с индексом сроков, entry = null - удаляет
+     */
+    private void put(String key, Entry entry) {
+        Entry previous = entry == null ? players.remove(key) : players.put(key, entry);
+        if (previous != null && previous.expiresAt() != 0) {
+            expiries.remove(new Expiry(previous.expiresAt(), key));
+        }
+        if (entry != null && entry.expiresAt() != 0) {
+            expiries.add(new Expiry(entry.expiresAt(), key));
+        }
+    }
+
+    private void clearAll() {
+        players.clear();
+        expiries.clear();
+    }
+
+    private static byte readVersion(DataInputStream in, Path file) throws IOException {
+        byte version = in.readByte();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Неподдерживаемая версия формата файла " + file + ": " + version);
+        }
+        return version;
+    }
+
+    private void openLog(long generation) throws IOException {
+        Path file = logPath(generation);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(LOG_MAGIC).put(FORMAT_VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        }
+        channel.position(channel.size());
+
+        this.log = channel;
+        this.logGeneration = generation;
+        this.logSize = channel.size();
+    }
+
+    private Path logPath(long generation) {
+        return directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    private static String readName(DataInputStream in, int length) throws IOException {
+        byte[] name = new byte[length];
+        in.readFully(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private static void updateChecksum(CRC32 crc, byte operation, byte[] name, long expiresAt) {
+        crc.reset();
+        crc.update(operation);
+        crc.update(name.length >>> 8);
+        crc.update(name.length);
+        crc.update(name);
+        if (operation == TIMED_ADD) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                crc.update((int) (expiresAt >>> shift));
+            }
+        }
+    }
+
+    /**
+     * Изменение, ожидающее записи. Результат - сколько ников оно затронуло
+     *
+     * @param time    срок действия для TIMED_ADD, текущее время для EXPIRE
+     * @param removed для EXPIRE - сюда поток записи добавляет удаленные ники
+     */
+    private record Mutation(byte operation, Collection<String> usernames, long time, List<String> removed,
+                            CompletableFuture<Integer> result) {
+    }
+
+    private CompletableFuture<Integer> submit(byte operation, Collection<String> usernames) {
+        return submit(new Mutation(operation, usernames, 0, null, new CompletableFuture<>()));
+    }
+
+    private CompletableFuture<Integer> submit(Mutation mutation) {
+        // Под блокировкой: после метки остановки в очередь ничего не попадает
+        synchronized (queue) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Файловое хранилище закрыто"));
+            }
+            queue.add(mutation);
+        }
+        return mutation.result();
+    }
+
+    private void writeLoop() {
+        List<Mutation> group = new ArrayList<>();
+        CRC32 crc = new CRC32();
+
+        while (true) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(group, MAX_GROUP_SIZE - 1);
+
+            boolean stop = false;
+            for (int i = 0; i < group.size(); i++) {
+                if (group.get(i).usernames() == null) {
+                    // Метка остановки: все, что было в очереди до нее, уже в группе
+                    group.remove(i);
+                    stop = true;
+                    break;
+                }
+            }
+
+            commit(group, crc);
+            group.clear();
+            if (stop) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Записывает группу изменений в журнал одним write + fsync и только после
+     * этого применяет ее к списку в памяти и завершает future
+     */
+    private void commit(List<Mutation> group, CRC32 crc) {
+        if (group.isEmpty()) {
+            return;
+        }
+
+        // Изменения группы поверх players: null - ник удален
+        Map<String, Entry> changes = new HashMap<>();
+        boolean cleared = false;
+        long now = System.currentTimeMillis();
+        int[] affected = new int[group.size()];
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        try {
+            for (int i = 0; i < group.size(); i++) {
+                Mutation mutation = group.get(i);
+                if (mutation.operation() == CLEAR) {
+                    writeRecord(out, crc, CLEAR, new byte[0], 0);
+                    changes.clear();
+                    cleared = true;
+                    affected[i] = 1;
+                    continue;
+                }
+
+                byte operation = mutation.operation();
+                for (String username : mutation.usernames()) {
+                    String key = Usernames.normalize(username);
+                    Entry current = changes.containsKey(key) ? changes.get(key) : cleared ? null : players.get(key);
+                    byte[] name = username.getBytes(StandardCharsets.UTF_8);
+
+                    // Ник с истекшим сроком, который еще не удалила проверка сроков, считается отсутствующим
+                    if ((operation == ADD || operation == TIMED_ADD) && (current == null || isExpired(current, now))
+                            && name.length <= MAX_NAME_BYTES) {
+                        long expiresAt = operation == TIMED_ADD ? mutation.time() : 0;
+                        writeRecord(out, crc, operation, name, expiresAt);
+                        changes.put(key, new Entry(username, expiresAt));
+                        affected[i]++;
+                    } else if (operation == REMOVE && current != null
+                            || operation == EXPIRE && current != null && isExpired(current, mutation.time())) {
+                        // Срок мог быть продлен после выборки в removeExpired, поэтому проверяется еще раз
+                        writeRecord(out, crc, REMOVE, key.getBytes(StandardCharsets.UTF_8), 0);
+                        changes.put(key, null);
+                        if (operation == EXPIRE) {
+                            mutation.removed().add(current.username());
+                        }
+                        affected[i]++;
+                    }
+                }
+            }
+
+            if (buffer.size() > 0) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+                while (bytes.hasRemaining()) {
+                    log.write(bytes);
+                }
+                log.force(false);
+                logSize += buffer.size();
+            }
+        } catch (IOException e) {
+            WhitelistMetrics.getInstance().recordDatabaseError();
+            VelocityCoolList.LOGGER.error("Ошибка при записи журнала вайтлиста: ", e);
+            discardPartialWrite();
+            for (Mutation mutation : group) {
+                mutation.result().completeExceptionally(e);
+            }
+            return;
+        }
+
+        if (cleared) {
+            clearAll();
+        }
+        for (Map.Entry<String, Entry> change : changes.entrySet()) {
+            put(change.getKey(), change.getValue());
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).result().complete(affected[i]);
+        }
+
+        if (logSize >= Math.max(MIN_COMPACT_BYTES, 2 * snapshotSize)) {
+            compact();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, CRC32 crc, byte operation, byte[] name, long expiresAt) throws IOException {
+        updateChecksum(crc, operation, name, expiresAt);
+        out.writeByte(operation);
+        out.writeShort(name.length);
+        out.write(name);
+        if (operation == TIMED_ADD) {
+            out.writeLong(expiresAt);
+        }
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static boolean isExpired(Entry entry, long now) {
+        return entry.expiresAt() != 0 && entry.expiresAt() <= now;
+    }
+
+    /**
+     * Отрезает от журнала то, что успело записаться из неудачной группы,
+     * чтобы следующие записи не оказались после испорченной
+     */
+    private void discardPartialWrite() {
+        try {
+            log.truncate(logSize);
+            log.position(logSize);
+        } catch (IOException e) {
+            VelocityCoolList.LOGGER.error("Не удалось восстановить журнал вайтлиста после ошибки: ", e);
+        }
+    }
+
+    /**
+     * Начинает новый журнал и в фоне сохраняет снимок текущего списка.
+     * Старые журналы удаляются только после того, как снимок записан
+     */
+    private void compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+
+        long generation = logGeneration + 1;
+        List<Entry> snapshot;
+        try {
+            FileChannel previous = log;
+            openLog(generation);
+            previous.close();
+            // Поток записи стоит, поэтому копия совпадает с содержимым закрытых журналов
+            snapshot = new ArrayList<>(players.values());
+        } catch (IOException e) {
+            VelocityCoolList.LOGGER.error("Не удалось начать новый журнал вайтлиста: ", e);
+            compacting.set(false);
+            return;
+        }
+
+        compactor.execute(() -> {
+            try {
+                writeSnapshot(snapshot, generation);
+            } catch (IOException e) {
+                VelocityCoolList.LOGGER.error("Не удалось сохранить снимок вайтлиста: ", e);
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    private void writeSnapshot(List<Entry> entries, long generation) throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (OutputStream stream = Files.newOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(stream, 64 * 1024), crc));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(generation);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                byte[] name = entry.username().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(entry.expiresAt());
+            }
+            out.flush();
+            out.writeInt((int) crc.getValue());
+            out.flush();
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+        snapshotSize = Files.size(file);
+
+        for (long old = generation - 1; old >= 0 && Files.deleteIfExists(logPath(old)); old--) {
+            // Журналы удаляются от новых к старым до первого отсутствующего
+        }
+        VelocityCoolList.LOGGER.info("Журнал вайтлиста сжат: {} игроков в снимке", entries.size());
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // Не все ОС позволяют открыть папку, переименование все равно будет записано
+        }
+    }
+
+    private <T> CompletableFuture<T> timed(DatabaseOperation operation, CompletableFuture<T> future) {
+        long started = System.nanoTime();
+        return future.whenComplete((result, error) ->
+                WhitelistMetrics.getInstance().recordDatabase(operation, System.nanoTime() - started));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addPlayer(String username) {
+        return timed(DatabaseOperation.ADD, submit(ADD, List.of(username)))
+                .thenApply(affected -> affected > 0);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addTemporaryPlayer(String username, long expiresAt) {
+        Mutation mutation = new Mutation(TIMED_ADD, List.of(username), expiresAt, null, new CompletableFuture<>());
+        return timed(DatabaseOperation.ADD, submit(mutation))
+                .thenApply(affected -> affected > 0);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removePlayer(String username) {
+        return timed(DatabaseOperation.REMOVE, submit(REMOVE, List.of(username)))
+                .thenApply(affected -> affected > 0);
+    }
+
+    /**
+     * Все ники пакета записываются одной группой, результат - один Chunk
+     */
+    @Override
+    public CompletableFuture<BatchResult> addPlayers(Collection<String> usernames) {
+        return batch(ADD, usernames);
+    }
+
+    @Override
+    public CompletableFuture<BatchResult> removePlayers(Collection<String> usernames) {
+        return batch(REMOVE, usernames);
+    }
+
+    private CompletableFuture<BatchResult> batch(byte operation, Collection<String> usernames) {
+        return timed(DatabaseOperation.BATCH_WRITE, submit(operation, List.copyOf(usernames)))
+                .handle((affected, error) -> error != null
+                        ? BatchResult.failed()
+                        : new BatchResult(List.of(new BatchResult.Chunk(affected, usernames.size() - affected)), true));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> containsPlayer(String username) {
+        Entry entry = players.get(Usernames.normalize(username));
+        return CompletableFuture.completedFuture(entry != null && !isExpired(entry, System.currentTimeMillis()));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getAllPlayers() {
+        List<String> usernames = new ArrayList<>(players.size());
+        for (Entry entry : players.values()) {
+            usernames.add(entry.username());
+        }
+        return CompletableFuture.completedFuture(usernames);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getPlayersPage(String after, int offset, int limit) {
+        Collection<Entry> source;
+        if (after != null) {
+            source = players.tailMap(Usernames.normalize(after), false).values();
+        } else {
+            source = players.values();
+        }
+
+        List<String> page = new ArrayList<>(limit);
+        int skip = after != null ? 0 : offset;
+        long now = System.currentTimeMillis();
+        for (Entry entry : source) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (isExpired(entry, now)) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+            } else {
+                page.add(entry.username());
+            }
+        }
+        return CompletableFuture.completedFuture(page);
+    }
+
+    @Override
+    public CompletableFuture<Integer> countPlayers() {
+        return CompletableFuture.completedFuture(players.size());
+    }
+
+    @Override
+    public CompletableFuture<Long> forEachPlayer(UsernameConsumer consumer) {
+        long count = 0;
+        try {
+            for (Entry entry : players.values()) {
+                consumer.accept(entry.username());
+                count++;
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.completedFuture(count);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> getExpiringPlayers() {
+        Map<String, Long> result = new HashMap<>();
+        for (Expiry expiry : expiries) {
+            Entry entry = players.get(expiry.key());
+            if (entry != null) {
+                result.put(entry.username(), entry.expiresAt());
+            }
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> removeExpired(long now, int limit) {
+        List<String> keys = new ArrayList<>();
+        for (Expiry expiry : expiries) {
+            if (expiry.expiresAt() > now || keys.size() == limit) {
+                break;
+            }
+            keys.add(expiry.key());
+        }
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        Mutation mutation = new Mutation(EXPIRE, keys, now, new ArrayList<>(), new CompletableFuture<>());
+        return timed(DatabaseOperation.EXPIRE, submit(mutation))
+                .thenApply(affected -> mutation.removed());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> clearWhitelist() {
+        return timed(DatabaseOperation.CLEAR, submit(CLEAR, List.of()))
+                .handle((affected, error) -> error == null);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isEmpty() {
+        return CompletableFuture.completedFuture(players.isEmpty());
+    }
+
+    // Журнал изменений для других прокси не ведется: файловое хранилище рассчитано на один прокси
+
+    @Override
+    public CompletableFuture<List<WhitelistChange>> getChangesSince(long seq, int limit) {
+        return CompletableFuture.completedFuture(List.of());
+    }
+
+    @Override
+    public CompletableFuture<Long> getLatestChangeSeq() {
+        return CompletableFuture.completedFuture(0L);
+    }
+
+    @Override
+    public CompletableFuture<Long> getOldestChangeSeq() {
+        return CompletableFuture.completedFuture(0L);
+    }
+
+    @Override
+    public CompletableFuture<Integer> trimChanges(long olderThanMillis) {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    @Override
+    public boolean isChangeLogEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isWriteBehindEnabled() {
+        return false;
+    }
+
+    @Override
+    public DatabaseType getDatabaseType() {
+        return DatabaseType.FILE;
+    }
+
+    /**
+     * Записывает все изменения, принятые до вызова, и дожидается сжатия журнала
+     */
+    @Override
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+
+        synchronized (queue) {
+            closed = true;
+            queue.add(new Mutation(CLEAR, null, 0, null, new CompletableFuture<>()));
+        }
+        try {
+            writer.join();
+            compactor.shutdown();
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+            log.close();
+            VelocityCoolList.LOGGER.info("Файловое хранилище закрыто");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            VelocityCoolList.LOGGER.error("Ошибка при закрытии журнала вайтлиста: ", e);
+        }
+    }
+}
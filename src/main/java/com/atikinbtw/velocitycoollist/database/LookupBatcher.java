@@ -0,0 +1,140 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Собирает проверки разных ников за короткое окно и выполняет их одним
+ * запросом WHERE username_key IN (...). При массовом входе игроков на
+ * удаленную БД это заменяет десятки обращений по сети одним.
+ * Работает только для проверок мимо кэша Whitelist, то есть пока кэш
+ * не загружен; обычный вход игрока до БД не доходит
+ */
+class LookupBatcher {
+    private final Function<List<String>, CompletableFuture<Set<String>>> query;
+    private final long windowMicros;
+    private final int maxSize;
+    private final ScheduledExecutorService timer;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedLookups = new LongAdder();
+
+    // Защищены this
+    private Map<String, CompletableFuture<Boolean>> pending = new HashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    /**
+     * @param query    выполняет проверку пачки ников и возвращает найденные
+     * @param windowMs сколько ждать остальные ники после первого в пачке
+     * @param maxSize  при таком числе ников пачка отправляется не дожидаясь окна
+     */
+    LookupBatcher(Function<List<String>, CompletableFuture<Set<String>>> query, int windowMs, int maxSize) {
+        this.query = query;
+        this.windowMicros = TimeUnit.MILLISECONDS.toMicros(Math.max(1, windowMs));
+        this.maxSize = Math.max(1, maxSize);
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "VelocityCoolList-DB-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.timer = executor;
+    }
+
+    /**
+     * @param key ник, уже приведенный Usernames.normalize
+     */
+    CompletableFuture<Boolean> submit(String key) {
+        Map<String, CompletableFuture<Boolean>> batch = null;
+        CompletableFuture<Boolean> future;
+
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("База данных отключена"));
+            }
+
+            future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (pending.size() >= maxSize) {
+                batch = takeBatch();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, windowMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return future;
+    }
+
+    long getBatchCount() {
+        return batches.sum();
+    }
+
+    long getBatchedLookupCount() {
+        return batchedLookups.sum();
+    }
+
+    /**
+     * Отправляет накопленные проверки и больше не принимает новые
+     */
+    void shutdown() {
+        Map<String, CompletableFuture<Boolean>> batch;
+        synchronized (this) {
+            closed = true;
+            batch = takeBatch();
+        }
+
+        dispatch(batch);
+        timer.shutdownNow();
+    }
+
+    private void flush() {
+        Map<String, CompletableFuture<Boolean>> batch;
+        synchronized (this) {
+            batch = takeBatch();
+        }
+        dispatch(batch);
+    }
+
+    private Map<String, CompletableFuture<Boolean>> takeBatch() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        Map<String, CompletableFuture<Boolean>> batch = pending;
+        pending = new HashMap<>();
+        return batch;
+    }
+
+    private void dispatch(Map<String, CompletableFuture<Boolean>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        batches.increment();
+        batchedLookups.add(batch.size());
+
+        query.apply(new ArrayList<>(batch.keySet())).whenComplete((found, error) -> {
+            for (Map.Entry<String, CompletableFuture<Boolean>> entry : batch.entrySet()) {
+                if (error != null) {
+                    entry.getValue().completeExceptionally(error);
+                } else {
+                    entry.getValue().complete(found.contains(entry.getKey()));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,557 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import com.atikinbtw.velocitycoollist.Usernames;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * SQL, который зависит от типа базы данных. Все поиски по нику идут
+ * по колонке username_key (ник в нижнем регистре) с уникальным индексом,
+ * поэтому регистронезависимая проверка везде выполняется поиском по индексу
+ */
+abstract class SqlDialect {
+
+    static SqlDialect forType(DatabaseType type) {
+        return switch (type) {
+            case SQLITE -> new SqliteDialect();
+            case MYSQL -> new MysqlDialect();
+            case POSTGRESQL -> new PostgresDialect();
+            case FILE -> throw new IllegalArgumentException("Для файлового хранилища нет SQL-диалекта");
+        };
+    }
+
+    abstract String createTable();
+
+    /**
+     * Журнал изменений для синхронизации нескольких прокси
+     */
+    abstract String[] createChangesTable();
+
+    /**
+     * INSERT, который пропускает уже существующий ник. Параметры: username, username_key
+     */
+    abstract String insertIgnore();
+
+    /**
+     * То же со сроком действия. Параметры: username, username_key, expires_at
+     */
+    abstract String insertIgnoreExpiring();
+
+    /**
+     * Добавляет username_key в таблицы, созданные старыми версиями плагина
+     */
+    abstract String addKeyColumn();
+
+    /**
+     * Уникальный индекс idx_whitelist_username_key, выполняется после заполнения ключей
+     */
+    abstract String[] createKeyIndex();
+
+    /**
+     * Заполняет ключи, не заполненные прерванной миграцией. Повторный запуск ничего не меняет
+     */
+    String backfillKeys() {
+        return "UPDATE whitelist SET username_key = LOWER(username) WHERE username_key IS NULL";
+    }
+
+    /**
+     * Добавляет expires_at (мс с эпохи, NULL - бессрочно) и индекс по нему
+     */
+    abstract String[] addExpiresColumn();
+
+    /**
+     * Размер выборки для потокового чтения курсором
+     */
+    abstract int streamingFetchSize();
+
+    /**
+     * Нужна ли транзакция (autocommit = false), чтобы драйвер читал результат
+     * по streamingFetchSize строк, а не целиком
+     */
+    boolean streamingNeedsTransaction() {
+        return false;
+    }
+
+    /**
+     * true, если драйвер переписывает пакет INSERT в один многострочный запрос
+     * и вместо числа строк по каждому нику возвращает SUCCESS_NO_INFO
+     */
+    boolean rewritesBatchedInserts() {
+        return false;
+    }
+
+    String delete() {
+        return "DELETE FROM whitelist WHERE username_key = ?";
+    }
+
+    /**
+     * Параметры: username_key, текущее время - ники с истекшим сроком не находятся
+     */
+    String contains() {
+        return "SELECT 1 FROM whitelist WHERE username_key = ? AND (expires_at IS NULL OR expires_at > ?) LIMIT 1";
+    }
+
+    /**
+     * Проверка пачки ников, возвращает найденные username_key.
+     * Последний параметр - текущее время
+     */
+    String containsAny(int count) {
+        return "SELECT username_key FROM whitelist WHERE username_key IN ("
+                + String.join(", ", Collections.nCopies(count, "?")) + ") AND (expires_at IS NULL OR expires_at > ?)";
+    }
+
+    /**
+     * Сколько из переданных username_key уже есть в таблице
+     */
+    String countKeys(int count) {
+        return "SELECT COUNT(*) FROM whitelist WHERE username_key IN ("
+                + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
+    String selectExpiring() {
+        return "SELECT username, expires_at FROM whitelist WHERE expires_at IS NOT NULL";
+    }
+
+    /**
+     * Ники с истекшим сроком по индексу expires_at, самые старые первыми
+     */
+    String selectExpired() {
+        return "SELECT username FROM whitelist WHERE expires_at <= ? ORDER BY expires_at LIMIT ?";
+    }
+
+    /**
+     * Удаляет ник, только если его срок все еще истек: между выборкой и удалением
+     * ник могли удалить и добавить заново бессрочно
+     */
+    String deleteExpired() {
+        return "DELETE FROM whitelist WHERE username_key = ? AND expires_at <= ?";
+    }
+
+    String selectAll() {
+        return "SELECT username FROM whitelist ORDER BY username_key";
+    }
+
+    /**
+     * Параметры: username_key последнего ника прошлой страницы, текущее время, размер страницы
+     */
+    String selectPageAfter() {
+        return "SELECT username FROM whitelist WHERE username_key > ? AND (expires_at IS NULL OR expires_at > ?)"
+                + " ORDER BY username_key LIMIT ?";
+    }
+
+    /**
+     * Страница по номеру: OFFSET пропускает все ники до нее, поэтому для дальних
+     * страниц дешевле selectPageAfter. Параметры: текущее время, размер страницы, сдвиг
+     */
+    String selectPage() {
+        return "SELECT username FROM whitelist WHERE expires_at IS NULL OR expires_at > ?"
+                + " ORDER BY username_key LIMIT ? OFFSET ?";
+    }
+
+    String count() {
+        return "SELECT COUNT(*) FROM whitelist";
+    }
+
+    String clear() {
+        return "DELETE FROM whitelist";
+    }
+
+    String isEmpty() {
+        return "SELECT 1 FROM whitelist LIMIT 1";
+    }
+
+    /**
+     * Параметры: операция, ник, время изменения, срок действия ника или NULL
+     */
+    String insertChange() {
+        return "INSERT INTO whitelist_changes (operation, username, created_at, expires_at) VALUES (?, ?, ?, ?)";
+    }
+
+    String selectChangesSince() {
+        return "SELECT seq, operation, username, expires_at FROM whitelist_changes WHERE seq > ? ORDER BY seq LIMIT ?";
+    }
+
+    /**
+     * Срок временного ника в журнале, чтобы другие прокси не считали его бессрочным
+     */
+    String addChangeExpiresColumn() {
+        return "ALTER TABLE whitelist_changes ADD COLUMN expires_at BIGINT";
+    }
+
+    String maxChangeSeq() {
+        return "SELECT MAX(seq) FROM whitelist_changes";
+    }
+
+    String minChangeSeq() {
+        return "SELECT MIN(seq) FROM whitelist_changes";
+    }
+
+    String trimChanges() {
+        return "DELETE FROM whitelist_changes WHERE created_at < ?";
+    }
+
+    void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(createTable());
+
+            // Шаги миграции username_key идут отдельными командами без общей транзакции,
+            // поэтому каждый проверяется при каждом запуске: если процесс упал посреди
+            // миграции, следующий запуск ее доделает
+            if (!hasColumn(connection, "whitelist", "username_key")) {
+                statement.execute(addKeyColumn());
+            }
+            statement.execute(backfillKeys());
+            if (!hasIndex(connection, "whitelist", "idx_whitelist_username_key")) {
+                for (String sql : createKeyIndex()) {
+                    statement.execute(sql);
+                }
+            }
+
+            if (!hasColumn(connection, "whitelist", "expires_at")) {
+                for (String sql : addExpiresColumn()) {
+                    statement.execute(sql);
+                }
+            }
+
+            for (String sql : createChangesTable()) {
+                statement.execute(sql);
+            }
+            if (!hasColumn(connection, "whitelist_changes", "expires_at")) {
+                statement.execute(addChangeExpiresColumn());
+            }
+        }
+    }
+
+    static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, table, column)) {
+            return columns.next();
+        }
+    }
+
+    static final class SqliteDialect extends SqlDialect {
+        @Override
+        String createTable() {
+            return """
+                CREATE TABLE IF NOT EXISTS whitelist (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    username VARCHAR(255) NOT NULL COLLATE NOCASE,
+                    username_key VARCHAR(255) NOT NULL UNIQUE,
+                    added_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                )
+                """;
+        }
+
+        @Override
+        String[] createChangesTable() {
+            return new String[]{
+                    """
+                    CREATE TABLE IF NOT EXISTS whitelist_changes (
+                        seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                        operation CHAR(1) NOT NULL,
+                        username VARCHAR(255),
+                        created_at BIGINT NOT NULL,
+                        expires_at BIGINT
+                    )
+                    """,
+                    "CREATE INDEX IF NOT EXISTS idx_whitelist_changes_created ON whitelist_changes (created_at)"
+            };
+        }
+
+        @Override
+        String insertIgnore() {
+            return "INSERT OR IGNORE INTO whitelist (username, username_key) VALUES (?, ?)";
+        }
+
+        @Override
+        String insertIgnoreExpiring() {
+            return "INSERT OR IGNORE INTO whitelist (username, username_key, expires_at) VALUES (?, ?, ?)";
+        }
+
+        @Override
+        String addKeyColumn() {
+            return "ALTER TABLE whitelist ADD COLUMN username_key VARCHAR(255)";
+        }
+
+        @Override
+        String[] createKeyIndex() {
+            return new String[]{
+                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_whitelist_username_key ON whitelist (username_key)"
+            };
+        }
+
+        @Override
+        String[] addExpiresColumn() {
+            return new String[]{
+                    "ALTER TABLE whitelist ADD COLUMN expires_at BIGINT",
+                    "CREATE INDEX IF NOT EXISTS idx_whitelist_expires ON whitelist (expires_at)"
+            };
+        }
+
+        @Override
+        int streamingFetchSize() {
+            return 1000;
+        }
+    }
+
+    static final class MysqlDialect extends SqlDialect {
+        @Override
+        String createTable() {
+            return """
+                CREATE TABLE IF NOT EXISTS whitelist (
+                    id INT AUTO_INCREMENT PRIMARY KEY,
+                    username VARCHAR(255) NOT NULL,
+                    username_key VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL,
+                    added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    UNIQUE INDEX idx_whitelist_username_key (username_key)
+                ) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci
+                """;
+        }
+
+        @Override
+        String[] createChangesTable() {
+            return new String[]{
+                    """
+                    CREATE TABLE IF NOT EXISTS whitelist_changes (
+                        seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+                        operation CHAR(1) NOT NULL,
+                        username VARCHAR(255) NULL,
+                        created_at BIGINT NOT NULL,
+                        expires_at BIGINT NULL,
+                        INDEX idx_whitelist_changes_created (created_at)
+                    ) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci
+                    """
+            };
+        }
+
+        @Override
+        String insertIgnore() {
+            return "INSERT IGNORE INTO whitelist (username, username_key) VALUES (?, ?)";
+        }
+
+        @Override
+        String insertIgnoreExpiring() {
+            return "INSERT IGNORE INTO whitelist (username, username_key, expires_at) VALUES (?, ?, ?)";
+        }
+
+        @Override
+        String addKeyColumn() {
+            return "ALTER TABLE whitelist ADD COLUMN username_key VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL";
+        }
+
+        @Override
+        String[] createKeyIndex() {
+            return new String[]{
+                    "ALTER TABLE whitelist MODIFY username_key VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL, "
+                            + "ADD UNIQUE INDEX idx_whitelist_username_key (username_key)"
+            };
+        }
+
+        @Override
+        String[] addExpiresColumn() {
+            return new String[]{
+                    "ALTER TABLE whitelist ADD COLUMN expires_at BIGINT NULL, ADD INDEX idx_whitelist_expires (expires_at)"
+            };
+        }
+
+        @Override
+        int streamingFetchSize() {
+            // Построчная выдача результата драйвером MySQL
+            return Integer.MIN_VALUE;
+        }
+
+        @Override
+        boolean rewritesBatchedInserts() {
+            // rewriteBatchedStatements в DatabaseManager.setupMySQL
+            return true;
+        }
+    }
+
+    static final class PostgresDialect extends SqlDialect {
+        // Сколько байт COPY накапливается перед отправкой на сервер
+        private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+        @Override
+        boolean rewritesBatchedInserts() {
+            // reWriteBatchedInserts в DatabaseManager.setupPostgreSQL
+            return true;
+        }
+
+        @Override
+        String createTable() {
+            // COLLATE "C": побайтовое сравнение ключа, как utf8mb4_bin в MySQL.
+            // Индекс по нему обслуживает и =, и keyset-пагинацию username_key > ?
+            return """
+                CREATE TABLE IF NOT EXISTS whitelist (
+                    id BIGSERIAL PRIMARY KEY,
+                    username VARCHAR(255) NOT NULL,
+                    username_key VARCHAR(255) COLLATE "C" NOT NULL,
+                    added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    CONSTRAINT idx_whitelist_username_key UNIQUE (username_key)
+                )
+                """;
+        }
+
+        @Override
+        String[] createChangesTable() {
+            return new String[]{
+                    """
+                    CREATE TABLE IF NOT EXISTS whitelist_changes (
+                        seq BIGSERIAL PRIMARY KEY,
+                        operation CHAR(1) NOT NULL,
+                        username VARCHAR(255),
+                        created_at BIGINT NOT NULL,
+                        expires_at BIGINT
+                    )
+                    """,
+                    "CREATE INDEX IF NOT EXISTS idx_whitelist_changes_created ON whitelist_changes (created_at)"
+            };
+        }
+
+        @Override
+        String insertIgnore() {
+            return "INSERT INTO whitelist (username, username_key) VALUES (?, ?) ON CONFLICT (username_key) DO NOTHING";
+        }
+
+        @Override
+        String insertIgnoreExpiring() {
+            return "INSERT INTO whitelist (username, username_key, expires_at) VALUES (?, ?, ?) ON CONFLICT (username_key) DO NOTHING";
+        }
+
+        @Override
+        String addKeyColumn() {
+            return "ALTER TABLE whitelist ADD COLUMN username_key VARCHAR(255) COLLATE \"C\"";
+        }
+
+        @Override
+        String[] createKeyIndex() {
+            return new String[]{
+                    "ALTER TABLE whitelist ALTER COLUMN username_key SET NOT NULL",
+                    "ALTER TABLE whitelist ADD CONSTRAINT idx_whitelist_username_key UNIQUE (username_key)"
+            };
+        }
+
+        @Override
+        String[] addExpiresColumn() {
+            return new String[]{
+                    "ALTER TABLE whitelist ADD COLUMN expires_at BIGINT",
+                    "CREATE INDEX IF NOT EXISTS idx_whitelist_expires ON whitelist (expires_at)"
+            };
+        }
+
+        @Override
+        int streamingFetchSize() {
+            return 1000;
+        }
+
+        @Override
+        boolean streamingNeedsTransaction() {
+            // Без транзакции драйвер PostgreSQL читает весь результат в память
+            return true;
+        }
+
+        /**
+         * Массовое добавление через COPY: ники загружаются во временную таблицу
+         * одним потоком данных и переносятся в whitelist одним INSERT ... SELECT
+         * с ON CONFLICT DO NOTHING. Вызывается внутри транзакции, коммит за вызывающим
+         */
+        BatchResult.Chunk copyInsert(Connection connection, Collection<String> usernames, boolean changeLog) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("""
+                    CREATE TEMP TABLE IF NOT EXISTS whitelist_import (
+                        username VARCHAR(255) NOT NULL,
+                        username_key VARCHAR(255) COLLATE "C" NOT NULL
+                    ) ON COMMIT DELETE ROWS
+                    """);
+            }
+
+            CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY whitelist_import (username, username_key) FROM STDIN");
+            try {
+                StringBuilder rows = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+                for (String username : usernames) {
+                    appendCopyValue(rows, username).append('\t');
+                    appendCopyValue(rows, Usernames.normalize(username)).append('\n');
+
+                    if (rows.length() >= COPY_BUFFER_SIZE) {
+                        writeCopy(copy, rows);
+                    }
+                }
+                writeCopy(copy, rows);
+                copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+
+            int affected;
+            try (Statement statement = connection.createStatement()) {
+                affected = statement.executeUpdate("""
+                    INSERT INTO whitelist (username, username_key)
+                    SELECT username, username_key FROM whitelist_import
+                    ON CONFLICT (username_key) DO NOTHING
+                    """);
+            }
+
+            // В журнал пишутся все ники пакета - повторное применение безвредно
+            if (changeLog) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO whitelist_changes (operation, username, created_at) SELECT ?, username, ? FROM whitelist_import")) {
+                    statement.setString(1, WhitelistChange.Operation.ADD.getCode());
+                    statement.setLong(2, System.currentTimeMillis());
+                    statement.executeUpdate();
+                }
+            }
+
+            return new BatchResult.Chunk(affected, usernames.size() - affected);
+        }
+
+        private static void writeCopy(CopyIn copy, StringBuilder rows) throws SQLException {
+            if (rows.length() > 0) {
+                byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+                copy.writeToCopy(bytes, 0, bytes.length);
+                rows.setLength(0);
+            }
+        }
+
+        /**
+         * Значение в текстовом формате COPY: экранируются обратная косая черта и разделители
+         */
+        private static StringBuilder appendCopyValue(StringBuilder rows, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> rows.append("\\\\");
+                    case '\t' -> rows.append("\\t");
+                    case '\n' -> rows.append("\\n");
+                    case '\r' -> rows.append("\\r");
+                    default -> rows.append(c);
+                }
+            }
+            return rows;
+        }
+    }
+}
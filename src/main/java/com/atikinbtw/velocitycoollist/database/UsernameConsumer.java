@@ -0,0 +1,11 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import java.io.IOException;
+
+/**
+ * Получатель ников при потоковом чтении вайтлиста
+ */
+@FunctionalInterface
+public interface UsernameConsumer {
+    void accept(String username) throws IOException;
+}
@@ -0,0 +1,35 @@
+package com.atikinbtw.velocitycoollist.database;
+
+/**
+ * Запись из журнала изменений whitelist_changes
+ *
+ * @param username  ник, null для CLEAR
+ * @param expiresAt срок действия ника для ADD (мс с эпохи), 0 - бессрочно
+ */
+public record WhitelistChange(long seq, Operation operation, String username, long expiresAt) {
+
+    public enum Operation {
+        ADD("A"),
+        REMOVE("R"),
+        CLEAR("C");
+
+        private final String code;
+
+        Operation(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public static Operation fromCode(String code) {
+            for (Operation operation : values()) {
+                if (operation.code.equals(code)) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -1,18 +1,30 @@
 package com.atikinbtw.velocitycoollist.database;
 
+import com.atikinbtw.velocitycoollist.Config;
 import com.atikinbtw.velocitycoollist.VelocityCoolList;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class WhitelistRepository {
     private static WhitelistRepository INSTANCE;
-    private final DatabaseManager databaseManager;
+    private final WhitelistStore store;
     
     public WhitelistRepository(VelocityCoolList plugin) {
-        this.databaseManager = new DatabaseManager(plugin);
+        this.store = createStore(plugin);
         INSTANCE = this;
     }
     
+    private static WhitelistStore createStore(VelocityCoolList plugin) {
+        DatabaseType type = DatabaseType.fromString(Config.getInstance().getString("database.type"));
+        return switch (type) {
+            case SQLITE, MYSQL, POSTGRESQL -> new DatabaseManager(plugin);
+            case FILE -> new FileWhitelistStore(plugin);
+        };
+    }
+    
     public static WhitelistRepository getInstance() {
         if (INSTANCE == null) {
             throw new IllegalStateException("WhitelistRepository has not been initialized");
@@ -20,49 +32,145 @@ public class WhitelistRepository {
         return INSTANCE;
     }
     
+    public WhitelistStore getStore() {
+        return store;
+    }
+    
     public void initialize() {
-        databaseManager.initialize();
+        store.initialize();
     }
     
     public boolean contains(String username) {
         try {
-            return databaseManager.containsPlayer(username).get();
+            return store.containsPlayer(username).get();
         } catch (Exception e) {
             VelocityCoolList.LOGGER.error("Ошибка при проверке игрока в whitelist: ", e);
             return false;
         }
     }
     
+    public CompletableFuture<Boolean> containsAsync(String username) {
+        return store.containsPlayer(username);
+    }
+    
     public boolean addPlayer(String username) {
         try {
-            return databaseManager.addPlayer(username).get();
+            return store.addPlayer(username).get();
         } catch (Exception e) {
             VelocityCoolList.LOGGER.error("Ошибка при добавлении игрока в whitelist: ", e);
             return false;
         }
     }
     
+    public CompletableFuture<Boolean> addPlayerAsync(String username) {
+        return store.addPlayer(username);
+    }
+    
+    public CompletableFuture<Boolean> addTemporaryPlayerAsync(String username, long expiresAt) {
+        return store.addTemporaryPlayer(username, expiresAt);
+    }
+    
     public boolean removePlayer(String username) {
         try {
-            return databaseManager.removePlayer(username).get();
+            return store.removePlayer(username).get();
         } catch (Exception e) {
             VelocityCoolList.LOGGER.error("Ошибка при удалении игрока из whitelist: ", e);
             return false;
         }
     }
     
+    public CompletableFuture<Boolean> removePlayerAsync(String username) {
+        return store.removePlayer(username);
+    }
+    
+    public BatchResult addPlayers(Collection<String> usernames) {
+        try {
+            return store.addPlayers(usernames).get();
+        } catch (Exception e) {
+            VelocityCoolList.LOGGER.error("Ошибка при массовом добавлении игроков в whitelist: ", e);
+            return BatchResult.failed();
+        }
+    }
+    
+    public BatchResult removePlayers(Collection<String> usernames) {
+        try {
+            return store.removePlayers(usernames).get();
+        } catch (Exception e) {
+            VelocityCoolList.LOGGER.error("Ошибка при массовом удалении игроков из whitelist: ", e);
+            return BatchResult.failed();
+        }
+    }
+    
     public List<String> getAllPlayers() {
         try {
-            return databaseManager.getAllPlayers().get();
+            return store.getAllPlayers().get();
         } catch (Exception e) {
             VelocityCoolList.LOGGER.error("Ошибка при получении списка игроков: ", e);
             return List.of();
         }
     }
     
+    public CompletableFuture<List<String>> getAllPlayersAsync() {
+        return store.getAllPlayers();
+    }
+    
+    public List<String> getPlayersPage(String after, int offset, int limit) {
+        try {
+            return store.getPlayersPage(after, offset, limit).get();
+        } catch (Exception e) {
+            VelocityCoolList.LOGGER.error("Ошибка при получении страницы списка игроков: ", e);
+            return List.of();
+        }
+    }
+    
+    public int countPlayers() {
+        try {
+            return store.countPlayers().get();
+        } catch (Exception e) {
+            VelocityCoolList.LOGGER.error("Ошибка при подсчете игроков в whitelist: ", e);
+            return 0;
+        }
+    }
+    
+    public CompletableFuture<Long> forEachPlayer(UsernameConsumer consumer) {
+        return store.forEachPlayer(consumer);
+    }
+    
+    public CompletableFuture<Map<String, Long>> getExpiringPlayersAsync() {
+        return store.getExpiringPlayers();
+    }
+    
+    public List<String> removeExpired(long now, int limit) throws Exception {
+        return store.removeExpired(now, limit).get();
+    }
+    
+    public List<WhitelistChange> getChangesSince(long seq, int limit) throws Exception {
+        return store.getChangesSince(seq, limit).get();
+    }
+    
+    public long getLatestChangeSeq() throws Exception {
+        return store.getLatestChangeSeq().get();
+    }
+    
+    public long getOldestChangeSeq() throws Exception {
+        return store.getOldestChangeSeq().get();
+    }
+    
+    public int trimChanges(long olderThanMillis) throws Exception {
+        return store.trimChanges(olderThanMillis).get();
+    }
+    
+    public boolean isChangeLogEnabled() {
+        return store.isChangeLogEnabled();
+    }
+    
+    public boolean isWriteBehindEnabled() {
+        return store.isWriteBehindEnabled();
+    }
+    
     public boolean clear() {
         try {
-            return databaseManager.clearWhitelist().get();
+            return store.clearWhitelist().get();
         } catch (Exception e) {
             VelocityCoolList.LOGGER.error("Ошибка при очистке whitelist: ", e);
             return false;
@@ -71,7 +179,7 @@ public class WhitelistRepository {
     
     public boolean isEmpty() {
         try {
-            return databaseManager.isEmpty().get();
+            return store.isEmpty().get();
         } catch (Exception e) {
             VelocityCoolList.LOGGER.error("Ошибка при проверке пустоты whitelist: ", e);
             return true;
@@ -83,6 +191,6 @@ public class WhitelistRepository {
     }
     
     public void shutdown() {
-        databaseManager.shutdown();
+        store.shutdown();
     }
 }
@@ -0,0 +1,118 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Хранилище вайтлиста, с которым работает WhitelistRepository.
+ * Все ники сравниваются без учета регистра (через Usernames.normalize),
+ * все операции асинхронные
+ */
+public interface WhitelistStore {
+
+    void initialize();
+
+    /**
+     * Завершается с ошибкой, если запись не удалась. Ник с истекшим сроком,
+     * который еще не удалил removeExpired, считается отсутствующим
+     * и добавляется заново
+     *
+     * @return false, если ник уже был в вайтлисте
+     */
+    CompletableFuture<Boolean> addPlayer(String username);
+
+    /**
+     * Добавляет ник до момента expiresAt (мс с эпохи). После этого момента
+     * ник не находится проверками и удаляется removeExpired. Завершается с ошибкой,
+     * если запись не удалась. Ник с истекшим сроком добавляется заново, как в addPlayer
+     *
+     * @return false, если ник уже был в вайтлисте
+     */
+    CompletableFuture<Boolean> addTemporaryPlayer(String username, long expiresAt);
+
+    /**
+     * Завершается с ошибкой, если запись не удалась
+     *
+     * @return false, если ника не было в вайтлисте
+     */
+    CompletableFuture<Boolean> removePlayer(String username);
+
+    CompletableFuture<BatchResult> addPlayers(Collection<String> usernames);
+
+    CompletableFuture<BatchResult> removePlayers(Collection<String> usernames);
+
+    /**
+     * Завершается с ошибкой, если проверить не удалось
+     */
+    CompletableFuture<Boolean> containsPlayer(String username);
+
+    CompletableFuture<List<String>> getAllPlayers();
+
+    /**
+     * Страница списка в алфавитном порядке: после ника after или, если он null, со смещением offset.
+     * Ники с истекшим сроком не входят в страницу
+     */
+    CompletableFuture<List<String>> getPlayersPage(String after, int offset, int limit);
+
+    CompletableFuture<Integer> countPlayers();
+
+    /**
+     * Потоковое чтение всех ников без загрузки списка в память
+     *
+     * @return число прочитанных ников
+     */
+    CompletableFuture<Long> forEachPlayer(UsernameConsumer consumer);
+
+    /**
+     * Ники с ограниченным сроком: ник -> expires_at
+     */
+    CompletableFuture<Map<String, Long>> getExpiringPlayers();
+
+    /**
+     * Удаляет не больше limit ников, срок которых истек к now, начиная с самых старых
+     *
+     * @return удаленные ники
+     */
+    CompletableFuture<List<String>> removeExpired(long now, int limit);
+
+    CompletableFuture<Boolean> clearWhitelist();
+
+    CompletableFuture<Boolean> isEmpty();
+
+    /**
+     * Изменения с номером больше seq, по возрастанию номера
+     */
+    CompletableFuture<List<WhitelistChange>> getChangesSince(long seq, int limit);
+
+    /**
+     * Номер последнего изменения или 0, если журнал пуст
+     */
+    CompletableFuture<Long> getLatestChangeSeq();
+
+    /**
+     * Номер самого старого изменения в журнале или 0, если журнал пуст
+     */
+    CompletableFuture<Long> getOldestChangeSeq();
+
+    /**
+     * Удаляет из журнала изменения старше указанного времени
+     */
+    CompletableFuture<Integer> trimChanges(long olderThanMillis);
+
+    boolean isChangeLogEnabled();
+
+    /**
+     * true, если добавления и удаления записываются отложенно: вызывающий
+     * применяет их к кэшу сразу, а future завершается после записи
+     */
+    boolean isWriteBehindEnabled();
+
+    DatabaseType getDatabaseType();
+
+    /**
+     * Дожидается начатых операций и освобождает ресурсы
+     */
+    void shutdown();
+}
@@ -0,0 +1,160 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отложенная запись добавлений и удалений: изменения копятся в очереди
+ * и записываются одним потоком, по одной транзакции на пачку. Пачка уходит
+ * через interval после первого изменения или сразу, когда набралось maxSize.
+ * Future каждого изменения завершается после коммита пачки
+ */
+class WriteBehindQueue {
+    private final Writer writer;
+    private final long intervalMs;
+    private final int maxSize;
+    private final ScheduledExecutorService thread;
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    // Защищены this
+    private List<Write> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    /**
+     * Изменение в очереди
+     *
+     * @param operation ADD или REMOVE
+     */
+    record Write(WhitelistChange.Operation operation, String username, CompletableFuture<Boolean> result) {
+    }
+
+    @FunctionalInterface
+    interface Writer {
+        /**
+         * Записывает пачку одной транзакцией в порядке очереди
+         *
+         * @return для каждого изменения - изменило ли оно список
+         */
+        boolean[] write(List<Write> writes) throws SQLException;
+    }
+
+    /**
+     * @param intervalMs сколько ждать остальные изменения после первого в пачке
+     * @param maxSize    при таком числе изменений пачка записывается не дожидаясь интервала
+     */
+    WriteBehindQueue(Writer writer, int intervalMs, int maxSize) {
+        this.writer = writer;
+        this.intervalMs = Math.max(1, intervalMs);
+        this.maxSize = Math.max(1, maxSize);
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "VelocityCoolList-DB-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.thread = executor;
+    }
+
+    CompletableFuture<Boolean> submit(WhitelistChange.Operation operation, String username) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("База данных отключена"));
+            }
+
+            pending.add(new Write(operation, username, result));
+            if (pending.size() >= maxSize) {
+                cancelScheduledFlush();
+                thread.execute(this::flush);
+            } else if (scheduledFlush == null) {
+                scheduledFlush = thread.schedule(this::flush, intervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Завершается, когда записаны все изменения, принятые до вызова.
+     * Массовые операции и чтение ждут его, чтобы не обогнать очередь
+     */
+    CompletableFuture<Void> drain() {
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.completedFuture(null);
+            }
+            // Через поток записи даже при пустой очереди: пачка может записываться прямо сейчас
+            return CompletableFuture.runAsync(this::flush, thread);
+        }
+    }
+
+    long getFlushCount() {
+        return flushes.sum();
+    }
+
+    long getWriteCount() {
+        return writes.sum();
+    }
+
+    /**
+     * Записывает оставшиеся изменения и больше не принимает новые
+     */
+    void shutdown() {
+        synchronized (this) {
+            closed = true;
+            cancelScheduledFlush();
+        }
+
+        thread.execute(this::flush);
+        thread.shutdown();
+        try {
+            thread.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private void flush() {
+        List<Write> batch;
+        synchronized (this) {
+            cancelScheduledFlush();
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        flushes.increment();
+        writes.add(batch.size());
+
+        try {
+            boolean[] changed = writer.write(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(changed[i]);
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (Write write : batch) {
+                write.result().completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package com.atikinbtw.velocitycoollist.discord;
 
 import com.atikinbtw.velocitycoollist.Config;
-import java.util.HashMap;
-import java.util.Map;
+import com.atikinbtw.velocitycoollist.MessageTemplate;
 
 public class DiscordMessageManager {
     
@@ -31,32 +30,14 @@ public class DiscordMessageManager {
     }
     
     private String getMessage(String key, String defaultMessage, String... placeholders) {
-        String message = config.getMessages().getString(key);
+        MessageTemplate template = config.getTemplate(key);
         
-        if (message == null) {
+        if (template == null) {
             com.atikinbtw.velocitycoollist.VelocityCoolList.LOGGER.warn("Сообщение не найдено: " + key);
             return defaultMessage;
         }
         
-        return replacePlaceholders(message, placeholders);
-    }
-    
-    private String replacePlaceholders(String message, String... placeholders) {
-        if (placeholders.length == 0) {
-            return message;
-        }
-        
-        Map<String, String> replacements = new HashMap<>();
-        for (int i = 0; i < placeholders.length; i += 2) {
-            if (i + 1 < placeholders.length) {
-                replacements.put(placeholders[i], placeholders[i + 1]);
-            }
-        }
-        
-        for (Map.Entry<String, String> entry : replacements.entrySet()) {
-            message = message.replace("$" + entry.getKey(), entry.getValue());
-        }
-        
-        return message;
+        // Плейсхолдеры передаются парами без $: "USERNAME", "Steve"
+        return template.render(placeholders);
     }
 }
@@ -2,53 +2,82 @@ package com.atikinbtw.velocitycoollist.discord;
 
 import com.atikinbtw.velocitycoollist.VelocityCoolList;
 import com.atikinbtw.velocitycoollist.Whitelist;
+import com.atikinbtw.velocitycoollist.io.NameFileFormat;
+import com.atikinbtw.velocitycoollist.io.WhitelistImporter;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
 import java.util.List;
 
 public class DiscordModule extends ListenerAdapter {
+    // Списки в несколько сотен ников весят единицы КБ
+    private static final int MAX_BULK_FILE_BYTES = 1024 * 1024;
     
     private final VelocityCoolList plugin;
-    private final JDA jda;
+    private final String token;
     private final String guildId;
     private final List<String> allowedUsers;
     private final DiscordMessageManager messageManager;
+    // null, пока бот не запущен
+    private volatile JDA jda;
+    // Защищен this: после shutdown бот уже не запускается
+    private boolean closed;
     
     public DiscordModule(VelocityCoolList plugin, String token, String guildId, List<String> allowedUsers) {
         this.plugin = plugin;
+        this.token = token;
         this.guildId = guildId;
         this.allowedUsers = allowedUsers;
         this.messageManager = new DiscordMessageManager(com.atikinbtw.velocitycoollist.Config.getInstance());
-        
-        // Создаем JDA экземпляр
-        this.jda = JDABuilder.createDefault(token)
-                .enableIntents(GatewayIntent.MESSAGE_CONTENT)
-                .addEventListeners(this)
-                .build();
+    }
+    
+    /**
+     * Подключает бота в фоне: запуск прокси не ждет Discord.
+     * Команды регистрируются в onReady, когда бот подключился
+     */
+    public void start() {
+        plugin.scheduleTask(this::connect);
+    }
+    
+    private synchronized void connect() {
+        if (closed) {
+            return;
+        }
         
         try {
-            // Ждем готовности
-            jda.awaitReady();
-            
-            // Регистрируем команды
-            registerCommands();
-            
-            VelocityCoolList.LOGGER.info("Discord модуль успешно инициализирован!");
-            
+            // Слеш-командам не нужны ни интенты, ни кэш участников и каналов:
+            // createLight отключает кэши, а без интентов Discord не присылает лишние события
+            this.jda = JDABuilder.createLight(token, EnumSet.noneOf(GatewayIntent.class))
+                    .setEnableShutdownHook(false)
+                    .addEventListeners(this)
+                    .build();
         } catch (Exception e) {
             VelocityCoolList.LOGGER.error("Ошибка при инициализации Discord модуля: " + e.getMessage(), e);
         }
     }
     
-    private void registerCommands() {
+    @Override
+    public void onReady(ReadyEvent event) {
+        registerCommands(event.getJDA());
+        VelocityCoolList.LOGGER.info("Discord модуль успешно инициализирован!");
+    }
+    
+    private void registerCommands(JDA jda) {
         try {
             Guild guild = jda.getGuildById(guildId);
             if (guild == null) {
@@ -63,9 +92,12 @@ public class DiscordModule extends ListenerAdapter {
             SlashCommandData whitelistRemoveCommand = Commands.slash("whitelist-remove", "Удалить игрока из вайтлиста")
                     .addOption(OptionType.STRING, "username", "Ник игрока для удаления из вайтлиста", true);
             
+            SlashCommandData whitelistAddBulkCommand = Commands.slash("whitelist-add-bulk", "Добавить в вайтлист игроков из файла")
+                    .addOption(OptionType.ATTACHMENT, "file", "Файл .txt (ник на строку), .csv или .json со списком ников", true);
+            
             // Регистрируем команды
             guild.updateCommands()
-                    .addCommands(whitelistAddCommand, whitelistRemoveCommand)
+                    .addCommands(whitelistAddCommand, whitelistRemoveCommand, whitelistAddBulkCommand)
                     .queue();
             
             VelocityCoolList.LOGGER.info("Discord команды успешно зарегистрированы!");
@@ -85,14 +117,16 @@ public class DiscordModule extends ListenerAdapter {
             }
             
             String commandName = event.getName();
-            String username = event.getOption("username").getAsString();
             
             switch (commandName) {
                 case "whitelist-add":
-                    handleWhitelistAdd(event, username);
+                    handleWhitelistAdd(event, event.getOption("username").getAsString());
                     break;
                 case "whitelist-remove":
-                    handleWhitelistRemove(event, username);
+                    handleWhitelistRemove(event, event.getOption("username").getAsString());
+                    break;
+                case "whitelist-add-bulk":
+                    handleWhitelistAddBulk(event, event.getOption("file").getAsAttachment());
                     break;
                 default:
                     event.reply(messageManager.getDiscordMessage("error", "unknown_command")).setEphemeral(true).queue();
@@ -100,52 +134,116 @@ public class DiscordModule extends ListenerAdapter {
             
         } catch (Exception e) {
             VelocityCoolList.LOGGER.error("Ошибка при обработке Discord команды: " + e.getMessage(), e);
-            event.reply(messageManager.getDiscordMessage("error", "execution_error")).setEphemeral(true).queue();
+            if (event.isAcknowledged()) {
+                sendError(event.getHook(), messageManager.getDiscordMessage("error", "execution_error"));
+            } else {
+                event.reply(messageManager.getDiscordMessage("error", "execution_error")).setEphemeral(true).queue();
+            }
         }
     }
     
+    /**
+     * Ответ откладывается через deferReply, а добавление идет в потоке БД одним
+     * INSERT, который сам сообщает, был ли ник в списке. Поток событий JDA не ждет БД
+     */
     private void handleWhitelistAdd(SlashCommandInteractionEvent event, String username) {
-        try {
-            Whitelist whitelist = Whitelist.getInstance();
-            
-            if (whitelist.contains(username)) {
-                event.reply(messageManager.getDiscordMessage("warning", "already_whitelisted", "USERNAME", username)).queue();
-                VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_already_whitelisted", "USER", event.getUser().getName(), "USERNAME", username));
-                return;
+        event.deferReply().queue();
+        InteractionHook hook = event.getHook();
+        String user = event.getUser().getName();
+        
+        Whitelist.getInstance().addPlayerAsync(username).whenComplete((added, error) -> {
+            if (error != null) {
+                VelocityCoolList.LOGGER.error("Ошибка при добавлении в вайтлист: " + error.getMessage(), error);
+                sendError(hook, messageManager.getDiscordMessage("error", "add_failed", "USERNAME", username));
+            } else if (added) {
+                hook.sendMessage(messageManager.getDiscordMessage("success", "whitelist_add", "USERNAME", username)).queue();
+                VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_added", "USER", user, "USERNAME", username));
+            } else {
+                hook.sendMessage(messageManager.getDiscordMessage("warning", "already_whitelisted", "USERNAME", username)).queue();
+                VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_already_whitelisted", "USER", user, "USERNAME", username));
             }
-            
-            whitelist.addPlayer(username);
-            whitelist.saveFile();
-            
-            event.reply(messageManager.getDiscordMessage("success", "whitelist_add", "USERNAME", username)).queue();
-            VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_added", "USER", event.getUser().getName(), "USERNAME", username));
-            
-        } catch (Exception e) {
-            VelocityCoolList.LOGGER.error("Ошибка при добавлении в вайтлист: " + e.getMessage(), e);
-            event.reply(messageManager.getDiscordMessage("error", "add_failed", "USERNAME", username)).setEphemeral(true).queue();
-        }
+        });
     }
     
     private void handleWhitelistRemove(SlashCommandInteractionEvent event, String username) {
-        try {
-            Whitelist whitelist = Whitelist.getInstance();
-            
-            if (!whitelist.contains(username)) {
-                event.reply(messageManager.getDiscordMessage("warning", "not_whitelisted", "USERNAME", username)).queue();
-                VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_not_whitelisted", "USER", event.getUser().getName(), "USERNAME", username));
+        event.deferReply().queue();
+        InteractionHook hook = event.getHook();
+        String user = event.getUser().getName();
+        
+        Whitelist.getInstance().removePlayerAsync(username).whenComplete((removed, error) -> {
+            if (error != null) {
+                VelocityCoolList.LOGGER.error("Ошибка при удалении из вайтлиста: " + error.getMessage(), error);
+                sendError(hook, messageManager.getDiscordMessage("error", "remove_failed", "USERNAME", username));
+            } else if (removed) {
+                hook.sendMessage(messageManager.getDiscordMessage("success", "whitelist_remove", "USERNAME", username)).queue();
+                VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_removed", "USER", user, "USERNAME", username));
+            } else {
+                hook.sendMessage(messageManager.getDiscordMessage("warning", "not_whitelisted", "USERNAME", username)).queue();
+                VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_not_whitelisted", "USER", user, "USERNAME", username));
+            }
+        });
+    }
+    
+    /**
+     * Файл скачивается и разбирается потоково, ники пишутся пакетами через
+     * WhitelistImporter. Вместо ответа на каждый ник - один итоговый ответ
+     */
+    private void handleWhitelistAddBulk(SlashCommandInteractionEvent event, Message.Attachment attachment) {
+        String fileName = attachment.getFileName();
+        if (attachment.getSize() > MAX_BULK_FILE_BYTES) {
+            event.reply(messageManager.getDiscordMessage("error", "bulk_file_too_large",
+                    "FILE", fileName, "MAX", String.valueOf(MAX_BULK_FILE_BYTES / 1024))).setEphemeral(true).queue();
+            return;
+        }
+        
+        event.deferReply().queue();
+        InteractionHook hook = event.getHook();
+        String user = event.getUser().getName();
+        
+        attachment.getProxy().download().whenComplete((stream, downloadError) -> {
+            if (downloadError != null) {
+                VelocityCoolList.LOGGER.error("Не удалось скачать файл {} из Discord: ", fileName, downloadError);
+                sendError(hook, messageManager.getDiscordMessage("error", "bulk_failed", "FILE", fileName));
                 return;
             }
             
-            whitelist.removePlayer(username);
-            whitelist.saveFile();
-            
-            event.reply(messageManager.getDiscordMessage("success", "whitelist_remove", "USERNAME", username)).queue();
-            VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_removed", "USER", event.getUser().getName(), "USERNAME", username));
-            
-        } catch (Exception e) {
-            VelocityCoolList.LOGGER.error("Ошибка при удалении из вайтлиста: " + e.getMessage(), e);
-            event.reply(messageManager.getDiscordMessage("error", "remove_failed", "USERNAME", username)).setEphemeral(true).queue();
-        }
+            // Запись в БД - в потоке планировщика, а не в потоках JDA
+            plugin.scheduleTask(() -> {
+                try (Reader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                    // Прогресс не отправляется: в ответ на команду уходит только итог
+                    WhitelistImporter.Result result = WhitelistImporter.importFrom(reader,
+                            NameFileFormat.fromFileName(fileName), processed -> {});
+                    
+                    String[] placeholders = {
+                            "FILE", fileName,
+                            "USER", user,
+                            "ADDED", String.valueOf(result.added()),
+                            "SKIPPED", String.valueOf(result.skipped()),
+                            "INVALID", String.valueOf(result.invalid())
+                    };
+                    if (result.complete()) {
+                        hook.sendMessage(messageManager.getDiscordMessage("success", "whitelist_add_bulk", placeholders)).queue();
+                    } else {
+                        sendError(hook, messageManager.getDiscordMessage("error", "bulk_failed", placeholders));
+                    }
+                    VelocityCoolList.LOGGER.info(messageManager.getLogMessage("user_added_bulk", placeholders));
+                } catch (Exception e) {
+                    VelocityCoolList.LOGGER.error("Ошибка при импорте игроков из {}: ", fileName, e);
+                    sendError(hook, messageManager.getDiscordMessage("error", "bulk_failed", "FILE", fileName));
+                }
+            });
+        });
+    }
+    
+    /**
+     * Ошибка после deferReply видна только автору команды, как ответы об ошибках без отложенного ответа.
+     * Первое сообщение через hook заменяет отложенный ответ и наследует его видимость,
+     * поэтому отложенный ответ сначала удаляется, а ошибка отправляется отдельным сообщением
+     */
+    private static void sendError(InteractionHook hook, String message) {
+        hook.deleteOriginal().queue(
+                deleted -> hook.sendMessage(message).setEphemeral(true).queue(),
+                error -> hook.sendMessage(message).setEphemeral(true).queue());
     }
     
     private boolean isUserAllowed(String userId) {
@@ -153,6 +251,10 @@ public class DiscordModule extends ListenerAdapter {
     }
     
     public void shutdown() {
+        synchronized (this) {
+            closed = true;
+        }
+        
         try {
             if (jda != null) {
                 jda.shutdown();
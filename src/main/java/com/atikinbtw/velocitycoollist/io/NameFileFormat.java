@@ -0,0 +1,48 @@
+package com.atikinbtw.velocitycoollist.io;
+
+import java.util.Locale;
+
+/**
+ * Форматы файлов со списком ников для импорта и экспорта
+ */
+public enum NameFileFormat {
+    // Один ник на строку
+    TEXT("txt"),
+    // Ник в первой колонке, строка заголовка пропускается
+    CSV("csv"),
+    // Массив строк: ["nick1", "nick2"]
+    JSON("json");
+
+    private final String extension;
+
+    NameFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static NameFileFormat fromString(String name) {
+        for (NameFileFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Определяет формат по расширению файла, по умолчанию TEXT
+     */
+    public static NameFileFormat fromFileName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot >= 0) {
+            NameFileFormat format = fromString(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+            if (format != null) {
+                return format;
+            }
+        }
+        return TEXT;
+    }
+}
@@ -0,0 +1,77 @@
+package com.atikinbtw.velocitycoollist.io;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение ников из файла: в памяти держится только текущая строка
+ */
+public final class NameFileReader {
+    private NameFileReader() {
+    }
+
+    public static void read(Reader reader, NameFileFormat format, Consumer<String> consumer) throws IOException {
+        switch (format) {
+            case JSON -> readJson(reader, consumer);
+            case CSV -> readLines(reader, true, consumer);
+            case TEXT -> readLines(reader, false, consumer);
+        }
+    }
+
+    private static void readJson(Reader reader, Consumer<String> consumer) throws IOException {
+        try (JsonReader json = new JsonReader(reader)) {
+            json.beginArray();
+            while (json.hasNext()) {
+                if (json.peek() == JsonToken.STRING) {
+                    consumer.accept(json.nextString().trim());
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endArray();
+        }
+    }
+
+    private static void readLines(Reader reader, boolean csv, Consumer<String> consumer) throws IOException {
+        try (BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader)) {
+            boolean firstLine = true;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (firstLine && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                    line = line.substring(1);
+                }
+
+                String name = csv ? firstCsvColumn(line) : line.trim();
+                boolean header = firstLine && csv && isHeader(name);
+                firstLine = false;
+
+                if (name.isEmpty() || name.startsWith("#") || header) {
+                    continue;
+                }
+                consumer.accept(name);
+            }
+        }
+    }
+
+    private static String firstCsvColumn(String line) {
+        int end = line.indexOf(',');
+        if (end < 0) {
+            end = line.indexOf(';');
+        }
+
+        String column = (end < 0 ? line : line.substring(0, end)).trim();
+        if (column.length() >= 2 && column.charAt(0) == '"' && column.charAt(column.length() - 1) == '"') {
+            column = column.substring(1, column.length() - 1).trim();
+        }
+        return column;
+    }
+
+    private static boolean isHeader(String column) {
+        return column.equalsIgnoreCase("username") || column.equalsIgnoreCase("nickname") || column.equalsIgnoreCase("name");
+    }
+}
@@ -0,0 +1,79 @@
+package com.atikinbtw.velocitycoollist.io;
+
+import com.atikinbtw.velocitycoollist.Whitelist;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Экспорт вайтлиста в файл. Ники читаются из БД курсором и сразу пишутся
+ * в буферизованный канал, поэтому расход памяти не зависит от размера списка.
+ * Файл пишется во временный и переименовывается только после успешной записи
+ */
+public final class WhitelistExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private WhitelistExporter() {
+    }
+
+    /**
+     * @return число выгруженных ников
+     */
+    public static long exportTo(Path target, NameFileFormat format) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long count;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+            count = switch (format) {
+                case JSON -> writeJson(writer);
+                case CSV -> writeLines(writer, "username");
+                case TEXT -> writeLines(writer, null);
+            };
+            writer.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return count;
+    }
+
+    private static long writeJson(Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginArray();
+        long count = Whitelist.getInstance().forEachPlayer(json::value);
+        json.endArray();
+        json.flush();
+        return count;
+    }
+
+    private static long writeLines(Writer writer, String header) throws IOException {
+        if (header != null) {
+            writer.write(header);
+            writer.write('\n');
+        }
+
+        return Whitelist.getInstance().forEachPlayer(username -> {
+            writer.write(username);
+            writer.write('\n');
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.atikinbtw.velocitycoollist.io;
+
+import com.atikinbtw.velocitycoollist.Usernames;
+import com.atikinbtw.velocitycoollist.Whitelist;
+import com.atikinbtw.velocitycoollist.database.BatchResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Импорт ников из потока: ники читаются по одному, проверяются
+ * и записываются в вайтлист пакетами по CHUNK_SIZE
+ */
+public final class WhitelistImporter {
+    private static final int CHUNK_SIZE = 5000;
+
+    /**
+     * @param complete false, если запись прервалась ошибкой БД
+     */
+    public record Result(long added, long skipped, long invalid, boolean complete) {
+    }
+
+    private final Whitelist whitelist;
+    private final List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+    private long added;
+    private long skipped;
+    private long invalid;
+    private boolean failed;
+
+    private WhitelistImporter(Whitelist whitelist) {
+        this.whitelist = whitelist;
+    }
+
+    /**
+     * @param progress получает число обработанных ников после каждого пакета
+     */
+    public static Result importFrom(Reader reader, NameFileFormat format, LongConsumer progress) throws IOException {
+        WhitelistImporter importer = new WhitelistImporter(Whitelist.getInstance());
+
+        NameFileReader.read(reader, format, name -> importer.accept(name, progress));
+        importer.flush(progress);
+
+        return new Result(importer.added, importer.skipped, importer.invalid, !importer.failed);
+    }
+
+    private void accept(String name, LongConsumer progress) {
+        if (failed) {
+            return;
+        }
+
+        if (!Usernames.isValid(name)) {
+            invalid++;
+            return;
+        }
+
+        chunk.add(name);
+        if (chunk.size() == CHUNK_SIZE) {
+            flush(progress);
+        }
+    }
+
+    private void flush(LongConsumer progress) {
+        if (chunk.isEmpty() || failed) {
+            return;
+        }
+
+        BatchResult result = whitelist.addPlayers(chunk);
+        added += result.affected();
+        skipped += result.skipped();
+        failed = !result.complete();
+        chunk.clear();
+
+        progress.accept(added + skipped + invalid);
+    }
+}
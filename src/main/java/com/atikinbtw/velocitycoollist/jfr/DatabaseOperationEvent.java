@@ -0,0 +1,34 @@
+package com.atikinbtw.velocitycoollist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Операция DatabaseManager от начала выполнения задачи до результата,
+ * включая ожидание соединения из пула
+ */
+@Name("velocitycoollist.DatabaseOperation")
+@Label("Database Operation")
+@Category({"VelocityCoolList"})
+@Description("Whitelist database operation")
+@Enabled(false)
+@StackTrace(false)
+public class DatabaseOperationEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Username Hash")
+    @Description("0 for operations that are not about a single player")
+    public int usernameHash;
+
+    @Label("Backend")
+    public String backend;
+
+    @Label("Result")
+    public String result;
+}
@@ -0,0 +1,27 @@
+package com.atikinbtw.velocitycoollist.jfr;
+
+import com.atikinbtw.velocitycoollist.Usernames;
+import com.atikinbtw.velocitycoollist.database.WhitelistRepository;
+
+/**
+ * Общие значения полей событий JFR
+ */
+public final class JfrEvents {
+    private JfrEvents() {
+    }
+
+    /**
+     * Хеш ника вместо самого ника: записи можно сопоставлять между собой,
+     * не сохраняя имена игроков в файле записи
+     */
+    public static int usernameHash(String username) {
+        return username == null ? 0 : Usernames.normalize(username).hashCode();
+    }
+
+    /**
+     * Тип БД из конфига: sqlite, mysql и т.д.
+     */
+    public static String backend() {
+        return WhitelistRepository.getInstance().getStore().getDatabaseType().getName();
+    }
+}
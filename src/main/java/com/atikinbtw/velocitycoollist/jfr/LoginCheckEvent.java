@@ -0,0 +1,36 @@
+package com.atikinbtw.velocitycoollist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Проверка вайтлиста в обработчике PreLoginEvent или ServerPreConnectEvent:
+ * от входа в обработчик до continuation.resume()
+ */
+@Name("velocitycoollist.LoginCheck")
+@Label("Login Whitelist Check")
+@Category({"VelocityCoolList"})
+@Description("Whitelist check in a Velocity event handler")
+@Enabled(false)
+@StackTrace(false)
+public class LoginCheckEvent extends Event {
+    @Label("Handler")
+    public String handler;
+
+    @Label("Username Hash")
+    public int usernameHash;
+
+    @Label("Backend")
+    public String backend;
+
+    @Label("Result")
+    public String result;
+
+    @Label("Cached")
+    public boolean cached;
+}
@@ -0,0 +1,33 @@
+package com.atikinbtw.velocitycoollist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Проверка ника через Whitelist.contains / containsAsync
+ */
+@Name("velocitycoollist.WhitelistLookup")
+@Label("Whitelist Lookup")
+@Category({"VelocityCoolList"})
+@Description("Whitelist membership check")
+@Enabled(false)
+@StackTrace(false)
+public class WhitelistLookupEvent extends Event {
+    @Label("Username Hash")
+    public int usernameHash;
+
+    @Label("Backend")
+    public String backend;
+
+    @Label("Result")
+    public String result;
+
+    @Label("Cached")
+    @Description("Answered from the in-memory cache without a database query")
+    public boolean cached;
+}
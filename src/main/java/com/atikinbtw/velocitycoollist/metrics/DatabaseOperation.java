@@ -0,0 +1,25 @@
+package com.atikinbtw.velocitycoollist.metrics;
+
+/**
+ * Виды операций с БД, для которых отдельно считается задержка
+ */
+public enum DatabaseOperation {
+    CONTAINS("contains"),
+    ADD("add"),
+    REMOVE("remove"),
+    BATCH_WRITE("batch_write"),
+    READ("read"),
+    CLEAR("clear"),
+    CHANGE_LOG("change_log"),
+    EXPIRE("expire");
+
+    private final String metricName;
+
+    DatabaseOperation(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,166 @@
+package com.atikinbtw.velocitycoollist.metrics;
+
+import com.atikinbtw.velocitycoollist.Config;
+import com.atikinbtw.velocitycoollist.VelocityCoolList;
+import com.atikinbtw.velocitycoollist.Whitelist;
+import com.atikinbtw.velocitycoollist.database.DatabaseExecutor;
+import com.atikinbtw.velocitycoollist.database.DatabaseManager;
+import com.atikinbtw.velocitycoollist.database.WhitelistRepository;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически записывает метрики в текстовом формате Prometheus для
+ * textfile collector из node_exporter. Файл заменяется атомарно,
+ * чтобы коллектор не прочитал его наполовину записанным
+ */
+public class PrometheusFileWriter {
+    private static final String PREFIX = "velocitycoollist_";
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final VelocityCoolList plugin;
+    private final Path file;
+    private ScheduledTask task;
+
+    public PrometheusFileWriter(VelocityCoolList plugin) {
+        this.plugin = plugin;
+        this.file = plugin.DATADIRECTORY.resolve(Config.getInstance().getString("metrics.prometheus_file.path"));
+    }
+
+    public void start() {
+        long interval = Math.max(5, Config.getInstance().getInt("metrics.prometheus_file.interval_seconds"));
+        task = plugin.scheduleRepeatingTask(this::write, interval, TimeUnit.SECONDS);
+        VelocityCoolList.LOGGER.info("Метрики Prometheus записываются в {} каждые {} с", file, interval);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    private void write() {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, render(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            VelocityCoolList.LOGGER.error("Не удалось записать метрики Prometheus: ", e);
+        }
+    }
+
+    private static String render() {
+        WhitelistMetrics metrics = WhitelistMetrics.getInstance();
+        Whitelist whitelist = Whitelist.getInstance();
+        // null для файлового хранилища: у него нет пула соединений и очередей запросов
+        DatabaseManager database = WhitelistRepository.getInstance().getStore() instanceof DatabaseManager manager ? manager : null;
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "whitelist_players", "gauge", "Players on the whitelist");
+        sample(out, "whitelist_players", "", whitelist.size());
+
+        header(out, "lookups_total", "counter", "Whitelist lookups by result");
+        sample(out, "lookups_total", "result=\"hit\"", metrics.getHits());
+        sample(out, "lookups_total", "result=\"miss\"", metrics.getMisses());
+        sample(out, "lookups_total", "result=\"timeout\"", metrics.getLookupTimeouts());
+        sample(out, "lookups_total", "result=\"error\"", metrics.getLookupErrors());
+
+        header(out, "cached_lookups_total", "counter", "Lookups answered from the in-memory cache");
+        sample(out, "cached_lookups_total", "", metrics.getCachedLookups());
+
+        header(out, "bloom_filter_rejections_total", "counter", "Lookups rejected by the Bloom filter");
+        sample(out, "bloom_filter_rejections_total", "", whitelist.getBloomFilterRejections());
+
+        header(out, "denials_total", "counter", "Players denied by the whitelist");
+        sample(out, "denials_total", "", metrics.getDenials());
+
+        header(out, "handler_latency_seconds", "summary", "Event handler latency");
+        summary(out, "handler_latency_seconds", "event=\"pre_login\"", metrics.getPreLoginLatency());
+        summary(out, "handler_latency_seconds", "event=\"server_pre_connect\"", metrics.getConnectLatency());
+
+        header(out, "db_errors_total", "counter", "Database errors");
+        sample(out, "db_errors_total", "", metrics.getDatabaseErrors());
+
+        header(out, "db_operation_seconds", "summary", "Database operation latency");
+        for (DatabaseOperation operation : DatabaseOperation.values()) {
+            summary(out, "db_operation_seconds", "operation=\"" + operation.getMetricName() + "\"", metrics.getDatabaseLatency(operation));
+        }
+
+        if (database == null) {
+            return out.toString();
+        }
+
+        header(out, "db_lookups_total", "counter", "Database lookups, coalesced with an in-flight lookup or batched");
+        sample(out, "db_lookups_total", "kind=\"all\"", database.getLookupCount());
+        sample(out, "db_lookups_total", "kind=\"coalesced\"", database.getCoalescedLookupCount());
+        sample(out, "db_lookups_total", "kind=\"batched\"", database.getBatchedLookupCount());
+
+        header(out, "db_write_behind_total", "counter", "Writes committed by the write-behind queue and the transactions they took");
+        sample(out, "db_write_behind_total", "kind=\"writes\"", database.getWriteBehindWriteCount());
+        sample(out, "db_write_behind_total", "kind=\"transactions\"", database.getWriteBehindFlushCount());
+
+        header(out, "db_rejected_total", "counter", "Database tasks rejected because the queue was full");
+        sample(out, "db_rejected_total", "lane=\"lookup\"", database.getExecutor().getRejectedCount(DatabaseExecutor.Lane.LOOKUP));
+        sample(out, "db_rejected_total", "lane=\"general\"", database.getExecutor().getRejectedCount(DatabaseExecutor.Lane.GENERAL));
+
+        HikariPoolMXBean pool = database.getPoolMXBean();
+        if (pool != null) {
+            header(out, "pool_connections", "gauge", "Hikari pool connections by state");
+            sample(out, "pool_connections", "state=\"active\"", pool.getActiveConnections());
+            sample(out, "pool_connections", "state=\"idle\"", pool.getIdleConnections());
+            sample(out, "pool_connections", "state=\"pending\"", pool.getThreadsAwaitingConnection());
+        }
+
+        header(out, "pool_acquire_seconds", "summary", "Time spent waiting for a pooled connection");
+        summary(out, "pool_acquire_seconds", "", database.getPoolMetrics().getAcquireTime());
+
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(PREFIX).append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        for (double quantile : QUANTILES) {
+            sample(out, name, separator + "quantile=\"" + quantile + "\"", histogram.getValueAtPercentile(quantile * 100) / 1e9);
+        }
+        sample(out, name + "_sum", labels, histogram.getSum() / 1e9);
+        sample(out, name + "_count", labels, histogram.getCount());
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.9f", value);
+    }
+}
@@ -0,0 +1,123 @@
+package com.atikinbtw.velocitycoollist.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики и гистограммы плагина. Запись идет на горячем пути входа игроков,
+ * поэтому только LongAdder и LatencyHistogram: без блокировок и выделения памяти
+ */
+public final class WhitelistMetrics {
+    private static final WhitelistMetrics INSTANCE = new WhitelistMetrics();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder cachedLookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder lookupTimeouts = new LongAdder();
+    private final LongAdder lookupErrors = new LongAdder();
+    private final LongAdder denials = new LongAdder();
+    private final LongAdder databaseErrors = new LongAdder();
+
+    private final LatencyHistogram preLoginLatency = new LatencyHistogram();
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram[] databaseLatency = new LatencyHistogram[DatabaseOperation.values().length];
+
+    private WhitelistMetrics() {
+        for (int i = 0; i < databaseLatency.length; i++) {
+            databaseLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    public static WhitelistMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param cached ответ получен из кэша, без запроса к БД
+     */
+    public void recordLookup(boolean whitelisted, boolean cached) {
+        lookups.increment();
+        if (cached) {
+            cachedLookups.increment();
+        }
+        if (whitelisted) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    public void recordLookupTimeout() {
+        lookupTimeouts.increment();
+    }
+
+    public void recordLookupError() {
+        lookupErrors.increment();
+    }
+
+    public void recordPreLogin(long nanos, boolean denied) {
+        preLoginLatency.record(nanos);
+        if (denied) {
+            denials.increment();
+        }
+    }
+
+    public void recordConnect(long nanos, boolean denied) {
+        connectLatency.record(nanos);
+        if (denied) {
+            denials.increment();
+        }
+    }
+
+    public void recordDatabase(DatabaseOperation operation, long nanos) {
+        databaseLatency[operation.ordinal()].record(nanos);
+    }
+
+    public void recordDatabaseError() {
+        databaseErrors.increment();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getCachedLookups() {
+        return cachedLookups.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getLookupTimeouts() {
+        return lookupTimeouts.sum();
+    }
+
+    public long getLookupErrors() {
+        return lookupErrors.sum();
+    }
+
+    public long getDenials() {
+        return denials.sum();
+    }
+
+    public long getDatabaseErrors() {
+        return databaseErrors.sum();
+    }
+
+    public LatencyHistogram getPreLoginLatency() {
+        return preLoginLatency;
+    }
+
+    public LatencyHistogram getConnectLatency() {
+        return connectLatency;
+    }
+
+    public LatencyHistogram getDatabaseLatency(DatabaseOperation operation) {
+        return databaseLatency[operation.ordinal()];
+    }
+}
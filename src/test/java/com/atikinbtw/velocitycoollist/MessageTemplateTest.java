@@ -0,0 +1,91 @@
+package com.atikinbtw.velocitycoollist;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.event.ClickEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageTemplateTest {
+
+    @Test
+    void rendersReplacementsAndKeepsUnknownPlaceholders() {
+        MessageTemplate template = MessageTemplate.compile("$PLAYER was added by $SENDER, $UNKNOWN stays");
+
+        assertTrue(template.hasPlaceholders());
+        assertEquals("Steve was added by Alex, $UNKNOWN stays",
+                template.render("$PLAYER", "Steve", "SENDER", "Alex"));
+    }
+
+    @Test
+    void messageWithoutPlaceholdersIsParsedOnce() {
+        MessageTemplate template = MessageTemplate.compile("<green>Done");
+
+        assertFalse(template.hasPlaceholders());
+        assertEquals("Done", plainText(template.component()));
+        assertSame(template.component(), template.component());
+    }
+
+    @Test
+    void valuesAreNotParsedAsMarkup() {
+        MessageTemplate template = MessageTemplate.compile("<green>Added $PLAYER!");
+
+        assertEquals("Added <red>x</red>!", plainText(template.component("$PLAYER", "<red>x</red>")));
+    }
+
+    @Test
+    void valuesInsideTagsAreEscaped() {
+        MessageTemplate template = MessageTemplate.compile(
+                "<click:run_command:'/vclist list after $LAST'>next</click>");
+
+        Component component = template.component("$LAST", "a'b");
+
+        ClickEvent click = findClickEvent(component);
+        assertNotNull(click);
+        assertEquals("/vclist list after a'b", click.value());
+        assertEquals("next", plainText(component));
+    }
+
+    @Test
+    void componentValueKeepsItsMarkup() {
+        MessageTemplate status = MessageTemplate.compile("<green>enabled!");
+        MessageTemplate template = MessageTemplate.compile("<gold>Whitelist is $STATUS");
+
+        Component component = template.component("$STATUS", status.component());
+
+        assertEquals("Whitelist is enabled!", plainText(component));
+    }
+
+    private static String plainText(Component component) {
+        StringBuilder builder = new StringBuilder();
+        appendText(component, builder);
+        return builder.toString();
+    }
+
+    private static void appendText(Component component, StringBuilder builder) {
+        if (component instanceof TextComponent text) {
+            builder.append(text.content());
+        }
+        for (Component child : component.children()) {
+            appendText(child, builder);
+        }
+    }
+
+    private static ClickEvent findClickEvent(Component component) {
+        if (component.clickEvent() != null) {
+            return component.clickEvent();
+        }
+        for (Component child : component.children()) {
+            ClickEvent click = findClickEvent(child);
+            if (click != null) {
+                return click;
+            }
+        }
+        return null;
+    }
+}
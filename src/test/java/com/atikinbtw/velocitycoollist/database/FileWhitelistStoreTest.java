@@ -0,0 +1,136 @@
+package com.atikinbtw.velocitycoollist.database;
+
+import com.atikinbtw.velocitycoollist.Config;
+import com.atikinbtw.velocitycoollist.VelocityCoolList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileWhitelistStoreTest {
+    @TempDir
+    Path directory;
+
+    private VelocityCoolList plugin;
+    private FileWhitelistStore store;
+
+    @BeforeEach
+    void setUp() {
+        plugin = new VelocityCoolList(null, LoggerFactory.getLogger("VelocityCoolList"), directory);
+        // Хранилище читает sync.enabled из конфига; встроенный config.yml уже последней версии
+        new Config(plugin).init();
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void replaysLogAfterRestart() {
+        long expiresAt = System.currentTimeMillis() + 3_600_000;
+        assertTrue(store.addPlayer("Steve").join());
+        assertTrue(store.addPlayer("Alex").join());
+        assertTrue(store.addTemporaryPlayer("Notch", expiresAt).join());
+        assertTrue(store.removePlayer("alex").join());
+        assertFalse(store.addPlayer("STEVE").join());
+
+        store = reopen();
+
+        assertEquals(List.of("Notch", "Steve"), store.getAllPlayers().join());
+        assertFalse(store.containsPlayer("Alex").join());
+        assertEquals(Map.of("Notch", expiresAt), store.getExpiringPlayers().join());
+    }
+
+    @Test
+    void dropsTornTailRecord() throws IOException {
+        assertTrue(store.addPlayer("Steve").join());
+        store.shutdown();
+
+        Path log = newestLog();
+        long size = Files.size(log);
+        // Запись ADD с длиной имени 10, оборванная после трех байт имени
+        Files.write(log, new byte[]{'A', 0, 10, 'D', 'i', 'n'}, StandardOpenOption.APPEND);
+
+        store = open();
+
+        assertEquals(List.of("Steve"), store.getAllPlayers().join());
+        assertEquals(size, Files.size(log));
+
+        // Новые записи идут после обрезанного хвоста и переживают перезапуск
+        assertTrue(store.addPlayer("Alex").join());
+        store = reopen();
+
+        assertEquals(List.of("Alex", "Steve"), store.getAllPlayers().join());
+    }
+
+    @Test
+    void dropsRecordWithBadChecksum() throws IOException {
+        assertTrue(store.addPlayer("Steve").join());
+        store.shutdown();
+
+        Path log = newestLog();
+        long size = Files.size(log);
+        Files.write(log, new byte[]{'A', 0, 3, 'B', 'o', 'b', 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        store = open();
+
+        assertEquals(List.of("Steve"), store.getAllPlayers().join());
+        assertFalse(store.containsPlayer("Bob").join());
+        assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    void expiredPlayerCanBeAddedAgain() throws InterruptedException {
+        assertTrue(store.addTemporaryPlayer("Steve", System.currentTimeMillis() + 50).join());
+        Thread.sleep(100);
+
+        assertFalse(store.containsPlayer("Steve").join());
+        assertTrue(store.addPlayer("Steve").join());
+        assertTrue(store.containsPlayer("Steve").join());
+
+        store = reopen();
+
+        assertTrue(store.containsPlayer("Steve").join());
+        assertTrue(store.getExpiringPlayers().join().isEmpty());
+    }
+
+    private FileWhitelistStore open() {
+        FileWhitelistStore opened = new FileWhitelistStore(plugin);
+        opened.initialize();
+        return opened;
+    }
+
+    private FileWhitelistStore reopen() {
+        store.shutdown();
+        return open();
+    }
+
+    private Path newestLog() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("whitelist-\\d+\\.log"))
+                    .max(Comparator.comparingLong(FileWhitelistStoreTest::generation))
+                    .orElseThrow();
+        }
+    }
+
+    private static long generation(Path log) {
+        String name = log.getFileName().toString();
+        return Long.parseLong(name.substring("whitelist-".length(), name.length() - ".log".length()));
+    }
+}